@@ -0,0 +1,58 @@
+package study.querydsl;
+
+import com.querydsl.core.types.ConstructorExpression;
+import com.querydsl.core.types.dsl.EntityPathBase;
+import com.querydsl.core.types.dsl.PathBuilder;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.nativex.hint.NativeHint;
+import org.springframework.nativex.hint.TypeAccess;
+import org.springframework.nativex.hint.TypeHint;
+import study.querydsl.batch.MemberBatchResult;
+import study.querydsl.dto.IdLookup;
+import study.querydsl.dto.JsonIds;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamPage;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.QUserDto;
+import study.querydsl.dto.TeamAgeStats;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.QHello;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.id.NodeLocalIdGenerator;
+import study.querydsl.export.MemberExportJob;
+import study.querydsl.repository.support.DataVersionListener;
+
+/**
+ * native image 에서 리플렉션으로 접근하는 타입 (spring-native 가 엔티티, 빈은 따로 처리한다)
+ * <ul>
+ *     <li>Q 클래스: Querydsl4RepositorySupport 가 static 필드(QMember.member)를 리플렉션으로 찾는다</li>
+ *     <li>@QueryProjection DTO: ConstructorExpression 이 생성자를 리플렉션으로 호출한다</li>
+ *     <li>Jackson: 응답 DTO 와 @JsonSerialize(using) 직렬화기, 검색 조건 바인딩(setter)</li>
+ *     <li>Hibernate: @GenericGenerator(strategy) 와 엔티티 리스너</li>
+ * </ul>
+ * Lombok 은 컴파일 시점에만 쓰이므로 힌트가 필요 없다.
+ */
+@NativeHint(types = {
+        @TypeHint(types = {QMember.class, QTeam.class, QHello.class,
+                QMemberTeamDto.class, QMemberDto.class, QUserDto.class},
+                access = {TypeAccess.DECLARED_FIELDS, TypeAccess.DECLARED_CONSTRUCTORS}),
+        @TypeHint(types = {EntityPathBase.class, PathBuilder.class, ConstructorExpression.class},
+                access = {TypeAccess.DECLARED_CONSTRUCTORS, TypeAccess.PUBLIC_METHODS}),
+        @TypeHint(types = {MemberTeamDto.class, MemberDto.class, UserDto.class, MemberSearchCondition.class,
+                MemberTeamPage.class, MemberTeamColumns.class, IdLookup.class, MemberExportJob.class,
+                MemberBatchResult.class, TeamAgeStats.class},
+                access = {TypeAccess.DECLARED_CONSTRUCTORS, TypeAccess.DECLARED_FIELDS, TypeAccess.PUBLIC_METHODS}),
+        @TypeHint(types = {MemberTeamDto.Serializer.class, MemberTeamPage.Serializer.class,
+                MemberTeamColumns.Serializer.class, JsonIds.Serializer.class},
+                access = TypeAccess.DECLARED_CONSTRUCTORS),
+        @TypeHint(types = {NodeLocalIdGenerator.class, DataVersionListener.class},
+                access = {TypeAccess.DECLARED_CONSTRUCTORS, TypeAccess.DECLARED_METHODS})
+})
+@Configuration(proxyBeanMethods = false)
+public class NativeHints {
+}
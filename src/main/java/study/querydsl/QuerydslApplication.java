@@ -1,11 +1,31 @@
 package study.querydsl;
 
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.dto.JsonIds;
+import study.querydsl.entity.id.JdbcNodeIdLease;
+import study.querydsl.entity.id.NodeLocalIds;
 
 import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.util.List;
 
 @SpringBootApplication
 public class QuerydslApplication {
@@ -18,4 +38,49 @@ public class QuerydslApplication {
 	JPAQueryFactory jpaQueryFactory(EntityManager em) {
 		return new JPAQueryFactory(em);
 	}
+
+	//Member, Team 의 @GeneratedValue 와 같은 인스턴스 (JDBC batch insert 에서 id 미리 할당)
+	//재시작/중복 노드 id 에도 id 가 다시 발급되지 않도록 논리 시각 구간을 DB 에서 임대받는다
+	@Bean
+	NodeLocalIds nodeLocalIds(@Value("${member.id.node-id:0}") int nodeId,
+							  @Value("${member.id.lease-ms:10000}") long leaseMillis,
+							  JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		NodeLocalIds ids = NodeLocalIds.forNode(nodeId);
+		ids.useLease(new JdbcNodeIdLease(nodeId, jdbcTemplate, transactionManager), leaseMillis);
+		return ids;
+	}
+
+	@Bean
+	SQLQueryFactory sqlQueryFactory(DataSource dataSource) {
+		Configuration configuration = new Configuration(H2Templates.builder().build());
+		configuration.setExceptionTranslator(new SpringExceptionTranslator());
+		//스프링 트랜잭션에 묶인 커넥션을 그대로 사용
+		return new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+	}
+
+	//회원/팀 id 를 JSON 문자열로 쓸지 (기본은 숫자, JSON/Smile 모두 이 빌더로 만든다)
+	@Bean
+	Jackson2ObjectMapperBuilderCustomizer jsonIdsCustomizer(@Value("${member.web.ids-as-strings:false}") boolean idsAsStrings) {
+		return builder -> builder.postConfigurer(mapper -> mapper.setDefaultAttributes(JsonIds.attributes(idsAsStrings)));
+	}
+
+	//Accept: application/x-jackson-smile 요청에만 사용 (기본은 JSON)
+	//jackson-dataformat-smile 이 classpath 에 있으면 MVC 기본 컨버터에 Smile 이 들어가는데, 이 빈이 그 자리를 대신한다 (Boot 의 Jackson 설정 적용)
+	@Bean
+	@ConditionalOnProperty(name = "member.web.smile.enabled", havingValue = "true", matchIfMissing = true)
+	MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+	}
+
+	//끄면 기본 컨버터에 들어 있는 Smile 컨버터까지 빼야 Smile 응답이 없어진다
+	@Bean
+	@ConditionalOnProperty(name = "member.web.smile.enabled", havingValue = "false")
+	WebMvcConfigurer smileDisabledConfigurer() {
+		return new WebMvcConfigurer() {
+			@Override
+			public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+				converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter);
+			}
+		};
+	}
 }
@@ -0,0 +1,403 @@
+package study.querydsl.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.MemberSearchPredicates;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 오래된 회원을 보관하는 로컬 디스크 append-only 저장소
+ * <p>
+ * 추가할 때마다 회원을 id 순으로 정렬해서 BLOCK_SIZE 건씩 deflate 압축한 블록으로 세그먼트 파일 끝에 붙는다.
+ * 같은 내용으로 이미 보관된 회원은 건너뛰고, 내용이 바뀐 회원은 새 버전을 붙인다. 조회/검색은 나중에 쓴 버전을 본다.
+ * (삭제가 롤백된 뒤 수정된 회원을 다시 보관하는 경우 옛 사본이 남지 않도록)
+ * 블록 헤더: minId(8) maxId(8) count(4) compressedLength(4)
+ * <p>
+ * 메모리에는 블록마다 (minId, maxId, 위치) 만 두는 희소 인덱스를 유지하고,
+ * id 조회는 인덱스 이진 탐색 -> memory-map 된 세그먼트에서 블록만 풀어서 찾는다.
+ * (나중에 추가된 블록의 id 구간이 앞 블록과 겹칠 수 있어서 minId 순으로 정렬하고 maxId 누적 최댓값으로 후보를 좁힌다)
+ * 인덱스는 시작할 때 블록 헤더를 읽어서 다시 만든다.
+ * <p>
+ * 보관소는 노드 로컬이다. DB 에서 지운 회원의 유일한 사본이므로 member.archive.dir 은 반드시 지정해야 하고
+ * (OS 가 지우는 임시 디렉터리 금지) 영속 볼륨이어야 한다. 보관한 노드에서만 조회/검색된다.
+ */
+@Slf4j
+@Component
+public class MemberArchive {
+
+    static final int BLOCK_SIZE = 64;
+    private static final int HEADER_BYTES = 8 + 8 + 4 + 4;
+
+    private final Path dir;
+    private final long segmentBytes;
+
+    private final List<Segment> segments = new ArrayList<>();
+    //쓴 순서 (검색용)
+    private volatile BlockIndex[] index = new BlockIndex[0];
+    //minId 순 + 앞쪽 블록 maxId 의 누적 최댓값 (id 조회용)
+    private volatile Lookup lookup = new Lookup(new BlockIndex[0]);
+
+    public MemberArchive(@Value("${member.archive.dir:}") String dir,
+                         @Value("${member.archive.segment-size-mb:64}") int segmentSizeMb) {
+        if (dir == null || dir.isBlank()) {
+            throw new IllegalStateException("member.archive.dir must be set to a persistent directory;"
+                    + " the archive is the only copy of archived members");
+        }
+        this.dir = Paths.get(dir);
+        this.segmentBytes = Math.min(Integer.MAX_VALUE, segmentSizeMb * 1024L * 1024L);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<BlockIndex> blocks = new ArrayList<>();
+        for (Path file : files) {
+            Segment segment = new Segment(segments.size(), file);
+            segments.add(segment);
+            segment.recover(blocks);
+        }
+        index = blocks.toArray(new BlockIndex[0]);
+        lookup = new Lookup(index);
+        log.info("member archive opened. dir={}, segments={}, blocks={}", dir, segments.size(), index.length);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+    }
+
+    public long getMaxArchivedId() {
+        Lookup current = lookup;
+        return current.maxIds.length == 0 ? Long.MIN_VALUE : current.maxIds[current.maxIds.length - 1];
+    }
+
+    /**
+     * 같은 내용으로 이미 보관된 회원은 건너뛰고 나머지(새 회원, 바뀐 회원)를 추가한다. 디스크에 force 된 뒤 반환한다.
+     *
+     * @return 추가한 회원 수
+     */
+    public synchronized int append(List<MemberTeamDto> candidates) {
+        List<MemberTeamDto> members = new ArrayList<>(candidates.size());
+        for (MemberTeamDto member : candidates) {
+            if (!findById(member.getMemberId()).filter(member::equals).isPresent()) {
+                members.add(member);
+            }
+        }
+        members.sort(Comparator.comparing(MemberTeamDto::getMemberId));
+        for (int i = 1; i < members.size(); i++) {
+            if (members.get(i).getMemberId().equals(members.get(i - 1).getMemberId())) {
+                throw new IllegalArgumentException("duplicate member id: " + members.get(i).getMemberId());
+            }
+        }
+        if (members.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<BlockIndex> added = new ArrayList<>();
+            Set<Segment> touched = new LinkedHashSet<>();
+            for (int i = 0; i < members.size(); i += BLOCK_SIZE) {
+                BlockIndex block = writeBlock(members.subList(i, Math.min(members.size(), i + BLOCK_SIZE)),
+                        index.length + added.size());
+                added.add(block);
+                touched.add(block.segment);
+            }
+            for (Segment segment : touched) {
+                segment.flush();
+            }
+            BlockIndex[] blocks = Arrays.copyOf(index, index.length + added.size());
+            for (int i = 0; i < added.size(); i++) {
+                blocks[index.length + i] = added.get(i);
+            }
+            index = blocks;
+            lookup = new Lookup(blocks);
+            return members.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Optional<MemberTeamDto> findById(long memberId) {
+        Lookup current = lookup;
+        //minId <= memberId 인 마지막 블록부터 앞으로, 누적 maxId 가 memberId 보다 작아지면 더 볼 블록이 없다
+        int low = 0;
+        int high = current.blocks.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (current.blocks[mid].minId <= memberId) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        //같은 id 가 여러 블록에 있으면 나중에 쓴 블록이 최신
+        MemberTeamDto latest = null;
+        int latestOrder = -1;
+        for (int i = high; i >= 0 && current.maxIds[i] >= memberId; i--) {
+            BlockIndex block = current.blocks[i];
+            if (block.maxId < memberId || block.order < latestOrder) {
+                continue;
+            }
+            for (MemberTeamDto member : read(block)) {
+                if (member.getMemberId() == memberId) {
+                    latest = member;
+                    latestOrder = block.order;
+                    break;
+                }
+            }
+        }
+        return Optional.ofNullable(latest);
+    }
+
+    /**
+     * 보관된 회원 전체를 훑어서 조건에 맞는 회원을 찾는다. (명시적으로 요청한 경우에만 사용)
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<MemberTeamDto> result = new ArrayList<>();
+        MemberSearchPredicates predicates = MemberSearchPredicates.of(condition);
+        if (predicates.isUnsatisfiable()) {
+            return result;
+        }
+        //나중에 쓴 블록부터 읽어서 id 마다 최신 버전에만 조건을 적용한다
+        BlockIndex[] blocks = index;
+        Set<Long> seen = new HashSet<>();
+        for (int i = blocks.length - 1; i >= 0; i--) {
+            for (MemberTeamDto member : read(blocks[i])) {
+                if (seen.add(member.getMemberId()) && predicates.matches(member)) {
+                    result.add(member);
+                }
+            }
+        }
+        return result;
+    }
+
+    private BlockIndex writeBlock(List<MemberTeamDto> members, int order) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(raw);
+        for (MemberTeamDto member : members) {
+            out.writeLong(member.getMemberId());
+            writeNullableString(out, member.getUsername());
+            out.writeInt(member.getAge());
+            out.writeBoolean(member.getTeamId() != null);
+            if (member.getTeamId() != null) {
+                out.writeLong(member.getTeamId());
+            }
+            writeNullableString(out, member.getTeamName());
+        }
+        out.flush();
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw.toByteArray());
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        long minId = members.get(0).getMemberId();
+        long maxId = members.get(members.size() - 1).getMemberId();
+        ByteBuffer block = ByteBuffer.allocate(HEADER_BYTES + compressed.size());
+        block.putLong(minId).putLong(maxId).putInt(members.size()).putInt(compressed.size());
+        block.put(compressed.toByteArray());
+        block.flip();
+
+        Segment segment = writableSegment(block.remaining());
+        long offset = segment.append(block);
+        return new BlockIndex(minId, maxId, segment, offset + HEADER_BYTES, compressed.size(), members.size(), order);
+    }
+
+    private Segment writableSegment(int bytes) throws IOException {
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last == null || (last.size() > 0 && last.size() + bytes > segmentBytes)) {
+            last = new Segment(segments.size(), dir.resolve(String.format("segment-%05d.dat", segments.size())));
+            segments.add(last);
+        }
+        return last;
+    }
+
+    private List<MemberTeamDto> read(BlockIndex block) {
+        ByteBuffer compressed = block.segment.mapped().duplicate();
+        compressed.position((int) block.offset).limit((int) block.offset + block.length);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[block.count * 64];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == raw.length) {
+                    raw = Arrays.copyOf(raw, raw.length * 2);
+                }
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("corrupt archive block at " + block.offset);
+                }
+                length += n;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw, 0, length));
+            List<MemberTeamDto> members = new ArrayList<>(block.count);
+            for (int i = 0; i < block.count; i++) {
+                long memberId = in.readLong();
+                String username = readNullableString(in);
+                int age = in.readInt();
+                Long teamId = in.readBoolean() ? in.readLong() : null;
+                String teamName = readNullableString(in);
+                members.add(new MemberTeamDto(memberId, username, age, teamId, teamName));
+            }
+            return members;
+        } catch (DataFormatException | IOException e) {
+            throw new IllegalStateException("corrupt archive block at " + block.offset, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static class Lookup {
+        final BlockIndex[] blocks;
+        final long[] maxIds;
+
+        Lookup(BlockIndex[] written) {
+            blocks = written.clone();
+            Arrays.sort(blocks, Comparator.comparingLong(b -> b.minId));
+            maxIds = new long[blocks.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < blocks.length; i++) {
+                max = Math.max(max, blocks[i].maxId);
+                maxIds[i] = max;
+            }
+        }
+    }
+
+    private static class BlockIndex {
+        final long minId;
+        final long maxId;
+        final Segment segment;
+        final long offset;
+        final int length;
+        final int count;
+        //쓴 순서 (index 배열 위치)
+        final int order;
+
+        BlockIndex(long minId, long maxId, Segment segment, long offset, int length, int count, int order) {
+            this.minId = minId;
+            this.maxId = maxId;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.order = order;
+        }
+    }
+
+    private static class Segment {
+        final int number;
+        final FileChannel channel;
+        private volatile MappedByteBuffer mapped;
+
+        Segment(int number, Path file) throws IOException {
+            this.number = number;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        long size() throws IOException {
+            return channel.size();
+        }
+
+        long append(ByteBuffer block) throws IOException {
+            long offset = channel.size();
+            long position = offset;
+            while (block.hasRemaining()) {
+                position += channel.write(block, position);
+            }
+            return offset;
+        }
+
+        void flush() throws IOException {
+            channel.force(false);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        MappedByteBuffer mapped() {
+            return mapped;
+        }
+
+        /**
+         * 블록 헤더를 따라가면서 인덱스를 만들고, 마지막에 덜 쓰인 블록이 있으면 잘라낸다.
+         */
+        void recover(List<BlockIndex> blocks) throws IOException {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            long position = 0;
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                channel.read(header, position);
+                header.flip();
+                long minId = header.getLong();
+                long maxId = header.getLong();
+                int count = header.getInt();
+                int length = header.getInt();
+                if (position + HEADER_BYTES + length > size) {
+                    break;
+                }
+                blocks.add(new BlockIndex(minId, maxId, this, position + HEADER_BYTES, length, count, blocks.size()));
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                log.warn("truncating incomplete archive block in segment {} at {}", number, position);
+                channel.truncate(position);
+            }
+            flush();
+        }
+    }
+}
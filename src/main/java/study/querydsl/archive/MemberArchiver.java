@@ -0,0 +1,93 @@
+package study.querydsl.archive;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.id.NodeLocalIds;
+import study.querydsl.repository.support.DataVersion;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 오래된 회원을 {@link MemberArchive} 로 옮기고 member 테이블에서 지운다.
+ * id 가 시간순({@link NodeLocalIds})이므로 "cutoff 이전에 만들어진 회원" = "cutoff 시각의 최소 id 보다 작은 id" 이다.
+ * 이미 보관된 id 보다 작아도 member 테이블에 남아 있으면 다시 옮긴다. (삭제가 롤백된 회원, 다른 노드/이전 방식의 id)
+ * 보관소는 이 노드의 로컬 디스크에 있다. ({@link MemberArchive})
+ */
+@Slf4j
+@Service
+public class MemberArchiver {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final JPAQueryFactory queryFactory;
+    private final MemberArchive archive;
+    private final TransactionTemplate transactionTemplate;
+    private final DataVersion dataVersion;
+
+    public MemberArchiver(JPAQueryFactory queryFactory, MemberArchive archive,
+                          PlatformTransactionManager transactionManager, DataVersion dataVersion) {
+        this.queryFactory = queryFactory;
+        this.archive = archive;
+        this.dataVersion = dataVersion;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @return 옮긴 회원 수
+     */
+    public long archiveCreatedBefore(Instant cutoff) {
+        long upperBound = NodeLocalIds.lowestIdAt(cutoff);
+        long moved = 0;
+        while (true) {
+            Integer count = transactionTemplate.execute(status -> archiveChunk(upperBound));
+            if (count == null || count == 0) {
+                break;
+            }
+            moved += count;
+        }
+        log.info("archived {} members created before {}", moved, cutoff);
+        return moved;
+    }
+
+    //보관소에 먼저 쓰고(force) 나서 삭제를 커밋하므로 중간에 실패해도 회원이 사라지지 않는다
+    //삭제가 롤백되면 다음 실행에서 같은 회원을 다시 읽는다. 그 사이 수정됐으면 append 가 새 버전을 붙이고, 그대로면 건너뛴다
+    private int archiveChunk(long upperBound) {
+        List<MemberTeamDto> chunk = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.lt(upperBound))
+                .orderBy(member.id.asc())
+                .limit(CHUNK_SIZE)
+                .fetch();
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        archive.append(chunk);
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (MemberTeamDto dto : chunk) {
+            ids.add(dto.getMemberId());
+        }
+        queryFactory
+                .delete(member)
+                .where(member.id.in(ids))
+                .execute();
+        dataVersion.changed();
+        return chunk.size();
+    }
+}
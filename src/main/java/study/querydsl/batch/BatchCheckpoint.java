@@ -0,0 +1,45 @@
+package study.querydsl.batch;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 배치 작업의 id 구간별 진행 상황
+ * 청크 커밋과 같은 트랜잭션에서 갱신되므로 재시작하면 lastProcessedId 다음부터 이어서 처리한다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class BatchCheckpoint {
+    @Id
+    private String id;
+    private String jobName;
+    private int partitionNo;
+    private long rangeStart;
+    private long rangeEnd;
+    private long lastProcessedId;
+    private boolean done;
+
+    public BatchCheckpoint(String jobName, int partitionNo, long rangeStart, long rangeEnd) {
+        this.id = jobName + "#" + partitionNo;
+        this.jobName = jobName;
+        this.partitionNo = partitionNo;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.lastProcessedId = rangeStart - 1;
+    }
+
+    public void advance(long lastProcessedId) {
+        this.lastProcessedId = lastProcessedId;
+    }
+
+    public void complete() {
+        this.done = true;
+    }
+}
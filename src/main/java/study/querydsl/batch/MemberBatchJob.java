@@ -0,0 +1,20 @@
+package study.querydsl.batch;
+
+import study.querydsl.entity.Member;
+
+/**
+ * 전체 회원을 대상으로 하는 배치 작업
+ * StatelessSession 으로 읽은 회원이 넘어오므로 지연 로딩(member.getTeam() 초기화 등)은 사용할 수 없다.
+ */
+public interface MemberBatchJob {
+
+    /**
+     * 체크포인트 구분에 사용하는 이름 (재시작 시 같은 이름이면 이어서 실행)
+     */
+    String getName();
+
+    /**
+     * @return 회원을 변경했으면 true (청크 커밋 시 update 된다)
+     */
+    boolean process(Member member);
+}
@@ -0,0 +1,205 @@
+package study.querydsl.batch;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.hibernate.HibernateDeleteClause;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.DataVersion;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static study.querydsl.batch.QBatchCheckpoint.batchCheckpoint;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 전체 배치 실행기
+ * - id 구간을 나눠서 워커 풀에서 병렬로 처리
+ * - 구간마다 StatelessSession 으로 id 순서 청크를 읽고, 청크 단위로 커밋 (영속성 컨텍스트 없음)
+ * - 청크 커밋과 함께 체크포인트를 저장하므로 실패한 뒤 같은 이름으로 다시 실행하면 이어서 처리
+ * - 모든 구간이 끝나면 체크포인트를 지우므로 성공한 뒤 다시 실행하면 처음부터 새로 계획한다
+ */
+@Slf4j
+@Component
+public class MemberBatchJobRunner {
+
+    private final SessionFactory sessionFactory;
+    private final DataVersion dataVersion;
+    private final int defaultChunkSize;
+    private final int defaultWorkers;
+
+    public MemberBatchJobRunner(EntityManagerFactory emf,
+                                DataVersion dataVersion,
+                                @Value("${member.batch.chunk-size:1000}") int defaultChunkSize,
+                                @Value("${member.batch.workers:4}") int defaultWorkers) {
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.dataVersion = dataVersion;
+        this.defaultChunkSize = defaultChunkSize;
+        this.defaultWorkers = defaultWorkers;
+    }
+
+    public MemberBatchResult run(MemberBatchJob job) {
+        return run(job, defaultChunkSize, defaultWorkers);
+    }
+
+    public MemberBatchResult run(MemberBatchJob job, int chunkSize, int workers) {
+        if (chunkSize < 1 || workers < 1) {
+            throw new IllegalArgumentException("chunkSize and workers must be positive");
+        }
+        long start = System.currentTimeMillis();
+        List<BatchCheckpoint> pending = plan(job.getName(), workers * 4);
+        AtomicLong processed = new AtomicLong();
+        AtomicLong updated = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (BatchCheckpoint checkpoint : pending) {
+                futures.add(executor.submit(() -> runPartition(job, checkpoint, chunkSize, processed, updated)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("batch job interrupted: " + job.getName(), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("batch job failed, restart to resume: " + job.getName(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //전부 성공했으면 체크포인트를 남기지 않는다 (이어서 실행은 실패한 경우에만 필요)
+        reset(job.getName());
+        MemberBatchResult result = new MemberBatchResult(job.getName(), processed.get(), updated.get(),
+                System.currentTimeMillis() - start);
+        log.info("batch job finished. {} ({} rows/s)", result, String.format("%.0f", result.getRowsPerSecond()));
+        return result;
+    }
+
+    /**
+     * 체크포인트를 지워서 다음 실행이 처음부터 시작하게 한다.
+     */
+    public void reset(String jobName) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction tx = session.beginTransaction();
+            new HibernateDeleteClause(session, batchCheckpoint)
+                    .where(batchCheckpoint.jobName.eq(jobName))
+                    .execute();
+            tx.commit();
+        }
+    }
+
+    /**
+     * 기존 체크포인트가 있으면 끝나지 않은 구간을 이어서, 없으면 min/max id 로 구간을 새로 나눈다.
+     * 마지막 구간은 상한을 두지 않아서 계획 이후에 추가된(max 보다 큰 id) 회원도 처리한다.
+     */
+    private List<BatchCheckpoint> plan(String jobName, int partitions) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction tx = session.beginTransaction();
+            List<BatchCheckpoint> checkpoints = new HibernateQuery<Void>(session)
+                    .select(batchCheckpoint)
+                    .from(batchCheckpoint)
+                    .where(batchCheckpoint.jobName.eq(jobName))
+                    .orderBy(batchCheckpoint.partitionNo.asc())
+                    .fetch();
+            if (!checkpoints.isEmpty()) {
+                tx.commit();
+                List<BatchCheckpoint> pending = new ArrayList<>();
+                for (BatchCheckpoint checkpoint : checkpoints) {
+                    if (!checkpoint.isDone()) {
+                        pending.add(checkpoint);
+                    }
+                }
+                log.info("resuming batch job {}: {}/{} ranges left", jobName, pending.size(), checkpoints.size());
+                return pending;
+            }
+
+            Tuple bounds = new HibernateQuery<Void>(session)
+                    .select(member.id.min(), member.id.max())
+                    .from(member)
+                    .fetchOne();
+            Long min = bounds == null ? null : bounds.get(member.id.min());
+            Long max = bounds == null ? null : bounds.get(member.id.max());
+            if (min == null || max == null) {
+                tx.commit();
+                return checkpoints;
+            }
+
+            long span = max - min + 1;
+            long step = Math.max(1, (span + partitions - 1) / partitions);
+            int partitionNo = 0;
+            for (long rangeStart = min; rangeStart <= max; rangeStart += step) {
+                long rangeEnd = Math.min(max, rangeStart + step - 1);
+                boolean last = rangeEnd == max;
+                BatchCheckpoint checkpoint = new BatchCheckpoint(jobName, partitionNo++, rangeStart,
+                        last ? Long.MAX_VALUE : rangeEnd);
+                session.insert(checkpoint);
+                checkpoints.add(checkpoint);
+                if (last) {
+                    break;
+                }
+            }
+            tx.commit();
+            return checkpoints;
+        }
+    }
+
+    private void runPartition(MemberBatchJob job, BatchCheckpoint checkpoint, int chunkSize,
+                              AtomicLong processed, AtomicLong updated) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            while (true) {
+                Transaction tx = session.beginTransaction();
+                try {
+                    List<Member> chunk = new HibernateQuery<Void>(session)
+                            .select(member)
+                            .from(member)
+                            .where(member.id.gt(checkpoint.getLastProcessedId()),
+                                    member.id.loe(checkpoint.getRangeEnd()))
+                            .orderBy(member.id.asc())
+                            .limit(chunkSize)
+                            .fetch();
+                    if (chunk.isEmpty()) {
+                        checkpoint.complete();
+                        session.update(checkpoint);
+                        tx.commit();
+                        return;
+                    }
+                    int changed = 0;
+                    for (Member m : chunk) {
+                        if (job.process(m)) {
+                            session.update(m);
+                            changed++;
+                        }
+                    }
+                    checkpoint.advance(chunk.get(chunk.size() - 1).getId());
+                    session.update(checkpoint);
+                    tx.commit();
+                    //StatelessSession 은 엔티티 리스너를 거치지 않는다
+                    if (changed > 0) {
+                        dataVersion.changed();
+                        updated.addAndGet(changed);
+                    }
+                    processed.addAndGet(chunk.size());
+                } catch (RuntimeException e) {
+                    if (tx.isActive()) {
+                        tx.rollback();
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+}
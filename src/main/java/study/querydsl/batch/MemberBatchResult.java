@@ -0,0 +1,24 @@
+package study.querydsl.batch;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class MemberBatchResult {
+    private final String jobName;
+    private final long processed;
+    private final long updated;
+    private final long elapsedMillis;
+
+    public MemberBatchResult(String jobName, long processed, long updated, long elapsedMillis) {
+        this.jobName = jobName;
+        this.processed = processed;
+        this.updated = updated;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? processed : processed * 1000.0 / elapsedMillis;
+    }
+}
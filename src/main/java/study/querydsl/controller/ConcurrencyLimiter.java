@@ -0,0 +1,150 @@
+package study.querydsl.controller;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * gradient 방식 적응형 동시 실행 한도
+ * <p>
+ * 장기 평균 지연(longRtt)과 방금 관측한 지연(rtt)의 비율로 한도를 조절한다.
+ * <pre>
+ * gradient = clamp(longRtt / rtt, 0.5, 1.0)
+ * newLimit = limit * gradient + sqrt(limit)   (sqrt(limit) 만큼은 대기열 여유)
+ * limit    = limit * (1 - smoothing) + newLimit * smoothing
+ * </pre>
+ * 지연이 늘면(DB 대기) 한도가 줄고, 지연이 평소 수준이면 한도가 조금씩 늘어난다.
+ * 한도의 절반도 쓰지 않는 동안에는 늘리지 않는다. (부하가 없어서 지연이 낮은 것뿐이므로)
+ * 한도를 넘는 요청은 바로 거절하거나, {@link #tryAcquire(long, TimeUnit)} 로 자리가 날 때까지 잠깐 기다린다.
+ * 기다린 시간은 지연에 넣지 않는다. (자리를 얻은 뒤부터 잰다)
+ * min = max 로 만들면 고정 한도다.
+ */
+public class ConcurrencyLimiter {
+
+    private static final int LONG_RTT_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object slotFreed = new Object();
+    private volatile double limit;
+    private double longRttNanos;
+
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, LongSupplier nanoClock) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.nanoClock = nanoClock;
+    }
+
+    public Optional<Permit> tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return Optional.empty();
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return Optional.of(new Permit(current + 1, nanoClock.getAsLong()));
+            }
+        }
+    }
+
+    /**
+     * 한도가 차 있으면 자리가 날 때까지 최대 timeout 동안 기다린다. (기다리는 동안 호출한 스레드를 잡고 있다)
+     */
+    public Optional<Permit> tryAcquire(long timeout, TimeUnit unit) {
+        Optional<Permit> permit = tryAcquire();
+        if (permit.isPresent() || timeout <= 0) {
+            return permit;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (slotFreed) {
+            while (true) {
+                permit = tryAcquire();
+                long remaining = deadline - System.nanoTime();
+                if (permit.isPresent() || remaining <= 0) {
+                    return permit;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(slotFreed, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Optional.empty();
+                }
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtStart) {
+        rttNanos = Math.max(1, rttNanos);
+        //기준 지연은 천천히 따라간다 (과부하가 이어져도 바로 새 기준이 되지 않도록)
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_RTT_WINDOW;
+        }
+        //부하가 풀려서 지연이 기준보다 훨씬 낮으면 기준을 빨리 내린다
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        if (inFlightAtStart < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public class Permit {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 정상 완료. 지연을 한도 계산에 반영한다.
+         */
+        public void release() {
+            if (release0()) {
+                sample(nanoClock.getAsLong() - startNanos, inFlightAtStart);
+            }
+        }
+
+        /**
+         * 실패, 요청 밖에서 끝나는 작업 등 지연이 의미 없는 경우. 반영하지 않고 자리만 돌려준다.
+         */
+        public void ignore() {
+            release0();
+        }
+
+        private synchronized boolean release0() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            inFlight.decrementAndGet();
+            synchronized (slotFreed) {
+                slotFreed.notify();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔드포인트 묶음({@link EndpointClass})별 {@link ConcurrencyLimiter}
+ * 한도를 넘으면 member.limit.queue-timeout-ms 동안 기다린 뒤 503 (0 이면 바로, member.limit.enabled=false 면 제한 없음)
+ * <p>
+ * SEARCH, PAGING 은 요청 지연으로 조절하는 적응형 한도다.
+ * EXPORT 는 작업이 요청보다 오래 살아서 지연을 잴 수 없으므로 export 실행기가 받을 수 있는 수(workers + queue-capacity)로 고정한다.
+ * <p>
+ * metrics: member.limit.limit, member.limit.in-flight, member.limit.rejected (tag: class)
+ */
+@Component
+public class ConcurrencyLimiters {
+
+    private static final ConcurrencyLimiter NO_LIMIT =
+            new ConcurrencyLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0, System::nanoTime);
+
+    private final boolean enabled;
+    private final long queueTimeoutMillis;
+    private final Map<EndpointClass, ConcurrencyLimiter> limiters = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+
+    public ConcurrencyLimiters(MeterRegistry meterRegistry,
+                               @Value("${member.limit.enabled:true}") boolean enabled,
+                               @Value("${member.limit.initial:20}") int initialLimit,
+                               @Value("${member.limit.min:2}") int minLimit,
+                               @Value("${member.limit.max:200}") int maxLimit,
+                               @Value("${member.limit.smoothing:0.2}") double smoothing,
+                               @Value("${member.limit.queue-timeout-ms:0}") long queueTimeoutMillis,
+                               @Value("${member.export.workers:2}") int exportWorkers,
+                               @Value("${member.export.queue-capacity:10}") int exportQueueCapacity) {
+        this.enabled = enabled;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        int exportLimit = exportWorkers + exportQueueCapacity;
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            ConcurrencyLimiter limiter = endpointClass == EndpointClass.EXPORT
+                    ? new ConcurrencyLimiter(exportLimit, exportLimit, exportLimit, 0, System::nanoTime)
+                    : new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, smoothing, System::nanoTime);
+            limiters.put(endpointClass, limiter);
+            String tag = endpointClass.name().toLowerCase();
+            Gauge.builder("member.limit.limit", limiter, ConcurrencyLimiter::getLimit)
+                    .tag("class", tag).register(meterRegistry);
+            Gauge.builder("member.limit.in-flight", limiter, ConcurrencyLimiter::getInFlight)
+                    .tag("class", tag).register(meterRegistry);
+            rejected.put(endpointClass, Counter.builder("member.limit.rejected")
+                    .tag("class", tag).register(meterRegistry));
+        }
+    }
+
+    /**
+     * @throws ResponseStatusException 503, 한도를 넘은 경우
+     */
+    public ConcurrencyLimiter.Permit acquire(EndpointClass endpointClass) {
+        if (!enabled) {
+            return NO_LIMIT.tryAcquire().get();
+        }
+        return limiters.get(endpointClass).tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS).orElseThrow(() -> {
+            rejected.get(endpointClass).increment();
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    endpointClass + " concurrency limit exceeded");
+        });
+    }
+
+    public ConcurrencyLimiter get(EndpointClass endpointClass) {
+        return limiters.get(endpointClass);
+    }
+}
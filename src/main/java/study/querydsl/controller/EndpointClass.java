@@ -0,0 +1,13 @@
+package study.querydsl.controller;
+
+/**
+ * 동시 실행 한도를 따로 두는 엔드포인트 묶음
+ */
+public enum EndpointClass {
+    //v1 전체 검색
+    SEARCH,
+    //v2, v3 페이징
+    PAGING,
+    //export 작업
+    EXPORT
+}
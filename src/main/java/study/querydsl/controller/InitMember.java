@@ -1,38 +1,111 @@
 package study.querydsl.controller;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
-import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 초기 데이터는 컨텍스트가 뜬 뒤(ApplicationStartedEvent) 백그라운드에서 넣는다.
+ * 팀을 먼저 넣고, 회원은 member.seed.batch-size 개씩 트랜잭션 하나로 member.seed.workers 개 스레드에서 동시에 넣는다.
+ * 끝날 때까지 readiness 는 OUT_OF_SERVICE ({@link SeedProgress}), 진행 상황은 GET /seed/progress
+ */
+@Slf4j
 @Profile("local")
 @Component
-@RequiredArgsConstructor
 public class InitMember {
     private final InitMemberService initMemberService;
-    @PostConstruct
+    private final SeedProgress progress;
+    private final int members;
+    private final int teams;
+    private final int batchSize;
+    private final int workers;
+
+    public InitMember(InitMemberService initMemberService,
+                      SeedProgress progress,
+                      @Value("${member.seed.members:100}") int members,
+                      @Value("${member.seed.teams:2}") int teams,
+                      @Value("${member.seed.batch-size:1000}") int batchSize,
+                      @Value("${member.seed.workers:4}") int workers) {
+        this.initMemberService = initMemberService;
+        this.progress = progress;
+        this.members = members;
+        this.teams = teams;
+        this.batchSize = batchSize;
+        this.workers = workers;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
     public void init() {
-        initMemberService.init();
+        progress.start(members);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService seeder = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "member-seed-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture.supplyAsync(() -> initMemberService.initTeams(teams), seeder)
+                .thenCompose(teamIds -> {
+                    List<CompletableFuture<Void>> batches = new ArrayList<>();
+                    for (int from = 0; from < members; from += batchSize) {
+                        int start = from;
+                        int end = Math.min(members, from + batchSize);
+                        batches.add(CompletableFuture.runAsync(() -> {
+                            initMemberService.initMembers(teamIds, start, end);
+                            progress.inserted(end - start);
+                        }, seeder));
+                    }
+                    return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]));
+                })
+                .whenComplete((result, e) -> {
+                    seeder.shutdown();
+                    if (e == null) {
+                        progress.done();
+                        log.info("seeded {} members in {} teams: {}", members, teams, progress.snapshot());
+                    } else {
+                        progress.failed(e);
+                        log.error("seeding failed: {}", progress.snapshot(), e);
+                    }
+                });
     }
+
     @Component
     static class InitMemberService {
         @PersistenceContext
         EntityManager em;
+
+        //teamA, teamB, ... (26개 넘으면 team26, team27, ...)
+        @Transactional
+        public List<Long> initTeams(int count) {
+            List<Long> teamIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Team team = new Team(i < 26 ? "team" + (char) ('A' + i) : "team" + i);
+                em.persist(team);
+                teamIds.add(team.getId());
+            }
+            return teamIds;
+        }
+
         @Transactional
-        public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
+        public void initMembers(List<Long> teamIds, int from, int to) {
+            for (int i = from; i < to; i++) {
+                Team selectedTeam = teamIds.isEmpty()
+                        ? null : em.getReference(Team.class, teamIds.get(i % teamIds.size()));
+                em.persist(Member.withTeamReference("member" + i, i % 100, selectedTeam));
             }
         }
     }
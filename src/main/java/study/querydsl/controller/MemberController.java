@@ -1,34 +1,205 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamPage;
+import study.querydsl.dto.TeamAgeStats;
 import study.querydsl.repository.MemberJpaRepository;
-import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberReportRepository;
+import study.querydsl.repository.support.MemberSearchCoalescer;
+import study.querydsl.repository.support.MemberTeamSpillBuffer;
+import study.querydsl.repository.support.MemberTeamSpillBuffers;
+import study.querydsl.repository.support.QueryDeadline;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
+    private static final String SPILL_BUFFER_CLEANUP = MemberController.class.getName() + ".spillBufferCleanup";
+
     private final MemberJpaRepository memberJpaRepository;
-    private final MemberRepository memberRepository;
+    private final MemberReportRepository reportRepository;
+    private final MemberTeamSpillBuffers spillBuffers;
+    private final ObjectMapper objectMapper;
+    private final MemberSearchCaching caching;
+    private final MemberSearchCoalescer searchCoalescer;
+    private final ConcurrencyLimiters limiters;
+    private final RequestDeadlines deadlines;
 
+    /**
+     * 결과는 메모리 budget 을 넘으면 임시 파일로 내려가고(커넥션은 바로 반납),
+     * 응답을 다 쓰거나 중간에 실패/연결이 끊기면 임시 파일을 지운다. (응답을 쓰기 전에 async 처리가 끝나도 지운다)
+     * If-None-Match 가 현재 데이터 버전과 같으면 조회 없이 304
+     * 동시 조회 수는 {@link EndpointClass#SEARCH} 한도로 제한 (초과 시 503), 마감이 지나면 504
+     */
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition)
+    public ResponseEntity<StreamingResponseBody> searchMemberV1(MemberSearchCondition condition, WebRequest request)
     {
-        return memberJpaRepository.search(condition);
+        String etag = caching.currentETag();
+        if (request.checkNotModified(etag)) {
+            return caching.notModified(etag);
+        }
+        QueryDeadline deadline = deadlines.resolve(request, EndpointClass.SEARCH);
+        ConcurrencyLimiter.Permit permit = limiters.acquire(EndpointClass.SEARCH);
+        MemberTeamSpillBuffer buffer = spillBuffers.create();
+        try {
+            deadline.run(() -> {
+                memberJpaRepository.search(condition, buffer);
+                return null;
+            });
+            buffer.finish();
+            permit.release();
+        } catch (RuntimeException e) {
+            permit.ignore();
+            buffer.close();
+            if (e instanceof QueryTimeoutException) {
+                deadlines.timedOut(EndpointClass.SEARCH);
+            }
+            throw e;
+        }
+        //응답을 쓰기 전에 async 타임아웃/오류/연결 끊김으로 끝나도 버퍼를 닫는다 (이미 닫혔으면 무시)
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(SPILL_BUFFER_CLEANUP,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        buffer.close();
+                    }
+                });
+        StreamingResponseBody body = out -> {
+            try (MemberTeamSpillBuffer rows = buffer;
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                for (MemberTeamDto dto : rows) {
+                    generator.writeObject(dto);
+                }
+                generator.writeEndArray();
+            }
+        };
+        return caching.ok(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
+    /**
+     * 같은 조건의 동시 요청은 조회 한 번을 공유한다. 조회는 검색 전용 풀에서 실행되고 서블릿 스레드는 바로 반환된다.
+     * 동시 요청 수는 {@link EndpointClass#PAGING} 한도로 제한 (초과 시 503)
+     * 마감이 지나거나 클라이언트 연결이 끊기면 실행 중인 statement 를 취소한다.
+     */
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+    public DeferredResult<ResponseEntity<MemberTeamPage>> searchMemberV2(MemberSearchCondition condition,
+                                                                         Pageable pageable, WebRequest request) {
+        String etag = caching.currentETag();
+        if (request.checkNotModified(etag)) {
+            return completed(caching.notModified(etag));
+        }
+        return page(etag, deadlines.resolve(request, EndpointClass.PAGING),
+                deadline -> searchCoalescer.searchPageSimple(condition, pageable, deadline));
     }
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition,Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public DeferredResult<ResponseEntity<MemberTeamPage>> searchMemberV3(MemberSearchCondition condition,
+                                                                         Pageable pageable, WebRequest request) {
+        String etag = caching.currentETag();
+        if (request.checkNotModified(etag)) {
+            return completed(caching.notModified(etag));
+        }
+        return page(etag, deadlines.resolve(request, EndpointClass.PAGING),
+                deadline -> searchCoalescer.searchPageComplex(condition, pageable, deadline));
+    }
+
+    /**
+     * 팀별 나이 집계 (전체 회원을 id 범위로 나눠서 동시에 집계한다)
+     * 동시 실행 수는 {@link EndpointClass#SEARCH} 한도로 제한 (초과 시 503), 마감이 지나면 504
+     */
+    @GetMapping("/v1/teams/age-stats")
+    public List<TeamAgeStats> teamAgeStats(WebRequest request) {
+        QueryDeadline deadline = deadlines.resolve(request, EndpointClass.SEARCH);
+        ConcurrencyLimiter.Permit permit = limiters.acquire(EndpointClass.SEARCH);
+        try {
+            List<TeamAgeStats> stats = deadline.run(reportRepository::teamAgeStats);
+            permit.release();
+            return stats;
+        } catch (RuntimeException e) {
+            permit.ignore();
+            if (e instanceof QueryTimeoutException) {
+                deadlines.timedOut(EndpointClass.SEARCH);
+            }
+            throw e;
+        }
+    }
+
+    @ExceptionHandler(QueryTimeoutException.class)
+    public ResponseEntity<Void> queryTimeout() {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+    }
+
+    private DeferredResult<ResponseEntity<MemberTeamPage>> page(
+            String etag, QueryDeadline deadline,
+            Function<QueryDeadline, CompletableFuture<Page<MemberTeamDto>>> search) {
+        ConcurrencyLimiter.Permit permit = limiters.acquire(EndpointClass.PAGING);
+        CompletableFuture<Page<MemberTeamDto>> future;
+        try {
+            future = search.apply(deadline);
+        } catch (RejectedExecutionException e) {
+            permit.ignore();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many concurrent searches");
+        } catch (RuntimeException e) {
+            permit.ignore();
+            throw e;
+        }
+        DeferredResult<ResponseEntity<MemberTeamPage>> result =
+                new DeferredResult<>(Math.max(1, deadline.remainingMillis()));
+        result.onTimeout(() -> {
+            deadlines.timedOut(EndpointClass.PAGING);
+            future.cancel(false);
+            result.setErrorResult(new QueryTimeoutException("request deadline exceeded"));
+        });
+        result.onError(e -> {
+            deadlines.cancelled(EndpointClass.PAGING);
+            future.cancel(false);
+        });
+        future.whenComplete((page, e) -> {
+            if (e == null) {
+                permit.release();
+                result.setResult(caching.ok(etag).body(MemberTeamPage.of(page)));
+                return;
+            }
+            permit.ignore();
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof QueryTimeoutException) {
+                deadlines.timedOut(EndpointClass.PAGING);
+            }
+            result.setErrorResult(cause);
+        });
+        return result;
+    }
+
+    private static <T> DeferredResult<T> completed(T value) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.setResult(value);
+        return result;
     }
-}
\ No newline at end of file
+}
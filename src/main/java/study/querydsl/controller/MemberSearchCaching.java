@@ -0,0 +1,49 @@
+package study.querydsl.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.DataVersion;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 검색 응답의 ETag, Cache-Control
+ * ETag 는 조회 전에 읽은 데이터 버전이다. (조회 후에 읽으면 이전 데이터에 새 버전이 붙을 수 있다)
+ * JSON/Smile 응답이 같은 버전을 쓰므로 weak ETag + Vary: Accept
+ */
+@Component
+public class MemberSearchCaching {
+
+    private final DataVersion dataVersion;
+    private final CacheControl cacheControl;
+
+    public MemberSearchCaching(DataVersion dataVersion,
+                               @Value("${member.web.cache.max-age-seconds:0}") long maxAgeSeconds,
+                               @Value("${member.web.cache.stale-while-revalidate-seconds:10}") long staleWhileRevalidateSeconds) {
+        this.dataVersion = dataVersion;
+        this.cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS)
+                .staleWhileRevalidate(staleWhileRevalidateSeconds, TimeUnit.SECONDS);
+    }
+
+    public String currentETag() {
+        return "W/\"" + dataVersion.current() + "\"";
+    }
+
+    public ResponseEntity.BodyBuilder ok(String etag) {
+        return withHeaders(ResponseEntity.ok(), etag);
+    }
+
+    public <T> ResponseEntity<T> notModified(String etag) {
+        return withHeaders(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag).build();
+    }
+
+    private ResponseEntity.BodyBuilder withHeaders(ResponseEntity.BodyBuilder builder, String etag) {
+        return builder.eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT);
+    }
+}
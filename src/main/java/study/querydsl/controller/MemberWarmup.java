@@ -0,0 +1,307 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamPage;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.SearchEngine;
+import study.querydsl.repository.support.MemberSearchCoalescer;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 배포 직후 첫 요청이 느리지 않도록 readiness 전에 검색 경로를 미리 실행한다.
+ * <p>
+ * ApplicationRunner 가 끝나야 ApplicationReadyEvent(readiness ACCEPTING_TRAFFIC) 가 나가므로,
+ * 워밍업이 끝날 때까지 /actuator/health/readiness 는 OUT_OF_SERVICE 다.
+ * <ul>
+ *     <li>커넥션 풀을 최대 크기까지 채운다</li>
+ *     <li>MemberRepositoryCustom, MemberJpaRepository 의 검색 모양(조건 조합, 페이징, 엔진)을
+ *     맞는 회원이 없는 값으로 실행한다 -> JPQL 파싱, statement 캐시, JIT</li>
+ *     <li>실제 회원 한 페이지를 읽고 id 로 다시 조회해서 MemberTeamDto 로 JSON 직렬화한다 -> 행 매핑, 직렬화기</li>
+ *     <li>라운드 시간이 가장 빠른 라운드의 member.warmup.tolerance 배 안으로 member.warmup.steady-rounds 번 연속 들어오면 멈춘다
+ *     ({@link SteadyState})</li>
+ * </ul>
+ * 정상 상태까지 걸린 시간은 로그와 member.warmup.steady-state-ms 로 남긴다.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "member.warmup.enabled", havingValue = "true")
+public class MemberWarmup implements ApplicationRunner {
+
+    //실제 회원과 겹치지 않는 값
+    private static final String NO_SUCH_USERNAME = "__warmup__";
+    private static final Long NO_SUCH_ID = -1L;
+
+    private final MemberRepository memberRepository;
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberSearchCoalescer searchCoalescer;
+    private final ObjectMapper objectMapper;
+    private final DataSource dataSource;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxRounds;
+    private final int steadyRounds;
+    private final double tolerance;
+    private final AtomicLong steadyStateMillis = new AtomicLong(-1);
+
+    public MemberWarmup(MemberRepository memberRepository,
+                        MemberJpaRepository memberJpaRepository,
+                        MemberSearchCoalescer searchCoalescer,
+                        ObjectMapper objectMapper,
+                        DataSource dataSource,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${member.warmup.max-rounds:50}") int maxRounds,
+                        @Value("${member.warmup.steady-rounds:3}") int steadyRounds,
+                        @Value("${member.warmup.tolerance:1.2}") double tolerance) {
+        this.memberRepository = memberRepository;
+        this.memberJpaRepository = memberJpaRepository;
+        this.searchCoalescer = searchCoalescer;
+        this.objectMapper = objectMapper;
+        this.dataSource = dataSource;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxRounds = maxRounds;
+        this.steadyRounds = steadyRounds;
+        this.tolerance = tolerance;
+        Gauge.builder("member.warmup.steady-state-ms", steadyStateMillis, AtomicLong::get)
+                .description("time from warm-up start to steady-state search latency")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        int connections = fillConnectionPool();
+        Map<String, Runnable> shapes = shapes();
+
+        SteadyState steadyState = new SteadyState(steadyRounds, tolerance);
+        int round = 0;
+        while (round < maxRounds && !steadyState.isReached() && !shapes.isEmpty()) {
+            steadyState.add(runRound(shapes));
+            round++;
+        }
+        long elapsed = toMillis(System.nanoTime() - start);
+        if (steadyState.isReached()) {
+            steadyStateMillis.set(elapsed);
+        }
+        log.info("member warm-up {} in {} ms: {} connections, {} shapes, {} rounds, first round {} ms, fastest {} ms, jvm uptime {} ms",
+                steadyState.isReached() ? "reached steady state" : "stopped before steady state",
+                elapsed, connections, shapes.size(), round, toMillis(steadyState.first),
+                toMillis(steadyState.fastest), ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    private long runRound(Map<String, Runnable> shapes) {
+        long start = System.nanoTime();
+        for (Iterator<Map.Entry<String, Runnable>> it = shapes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Runnable> shape = it.next();
+            try {
+                shape.getValue().run();
+            } catch (RuntimeException e) {
+                //한 모양이 실패해도 나머지는 계속 데운다
+                log.warn("member warm-up shape {} failed, skipping it", shape.getKey(), e);
+                it.remove();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    Map<String, Runnable> shapes() {
+        Map<String, Runnable> shapes = new LinkedHashMap<>();
+        Pageable pageable = PageRequest.of(0, 20);
+        Pageable sorted = PageRequest.of(0, 20, Sort.by("username"));
+        for (Map.Entry<String, MemberSearchCondition> entry : conditions().entrySet()) {
+            String name = entry.getKey();
+            MemberSearchCondition condition = entry.getValue();
+            shapes.put("search " + name, () -> inTransaction(() -> memberRepository.search(condition)));
+            shapes.put("search sql " + name, () -> memberRepository.search(condition, SearchEngine.SQL));
+            shapes.put("columns " + name, () -> inTransaction(() -> memberRepository.searchColumns(condition)));
+            shapes.put("v2 " + name, () -> page(searchCoalescer.searchPageSimple(condition, pageable, deadline())));
+            shapes.put("v3 " + name, () -> page(searchCoalescer.searchPageComplex(condition, pageable, deadline())));
+            shapes.put("v3 sorted " + name, () -> page(searchCoalescer.searchPageComplex(condition, sorted, deadline())));
+            shapes.put("jpa search " + name, () -> inTransaction(() -> memberJpaRepository.search(condition)));
+            shapes.put("jpa builder " + name, () -> inTransaction(() -> memberJpaRepository.searchByBuilder(condition)));
+            shapes.put("jpa member " + name, () -> inTransaction(() -> memberJpaRepository.findMember(condition)));
+            shapes.put("jpa stream " + name, () -> memberJpaRepository.search(condition, dto -> { }));
+        }
+        shapes.put("member team by id", () -> memberRepository.findMemberTeamById(NO_SUCH_ID, false));
+        shapes.put("jpa by ids", () -> inTransaction(() -> memberJpaRepository.findAllByIds(Collections.singletonList(NO_SUCH_ID))));
+        shapes.put("jpa member teams by ids", () -> memberJpaRepository.findMemberTeamsByIds(Collections.singletonList(NO_SUCH_ID)));
+        shapes.put("rows", this::rows);
+        return shapes;
+    }
+
+    /**
+     * 맞는 회원이 없는 모양은 행 매핑과 MemberTeamDto 직렬화(v1 스트리밍)를 거치지 않으므로
+     * 실제 회원 한 페이지를 읽고, 그 id 로 다시 조회해서 한 건씩 직렬화한다. (회원이 없으면 가짜 한 건)
+     */
+    private void rows() {
+        Page<MemberTeamDto> page = memberRepository.searchPageSimple(new MemberSearchCondition(), PageRequest.of(0, 20));
+        List<Long> ids = new ArrayList<>();
+        for (MemberTeamDto dto : page.getContent()) {
+            ids.add(dto.getMemberId());
+        }
+        List<MemberTeamDto> rows = ids.isEmpty()
+                ? Collections.singletonList(new MemberTeamDto(NO_SUCH_ID, NO_SUCH_USERNAME, 0, NO_SUCH_ID, NO_SUCH_USERNAME))
+                : memberJpaRepository.findMemberTeamsByIds(ids).getFound();
+        try {
+            for (MemberTeamDto dto : rows) {
+                objectMapper.writeValueAsBytes(dto);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //조건 조합별로 다른 JPQL/SQL 이 되므로 모양마다 하나씩, 모두 맞는 회원이 없다
+    private static Map<String, MemberSearchCondition> conditions() {
+        Map<String, MemberSearchCondition> conditions = new LinkedHashMap<>();
+        MemberSearchCondition username = new MemberSearchCondition();
+        username.setUsername(NO_SUCH_USERNAME);
+        conditions.put("username", username);
+
+        MemberSearchCondition all = new MemberSearchCondition();
+        all.setUsername(NO_SUCH_USERNAME);
+        all.setTeamName(NO_SUCH_USERNAME);
+        all.setAgeGoe(1);
+        all.setAgeLoe(100);
+        conditions.put("username team age", all);
+
+        MemberSearchCondition age = new MemberSearchCondition();
+        age.setTeamName(NO_SUCH_USERNAME);
+        age.setAgeGoe(1);
+        conditions.put("team age", age);
+
+        MemberSearchCondition lists = new MemberSearchCondition();
+        lists.setUsernames(Arrays.asList(NO_SUCH_USERNAME, NO_SUCH_USERNAME + "2"));
+        lists.setTeamIds(Collections.singletonList(NO_SUCH_ID));
+        conditions.put("usernames teamIds", lists);
+        return conditions;
+    }
+
+    private void page(CompletableFuture<Page<MemberTeamDto>> future) {
+        try {
+            //응답 직렬화 경로까지
+            objectMapper.writeValueAsBytes(MemberTeamPage.of(future.join()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void inTransaction(Runnable action) {
+        readOnlyTransaction.executeWithoutResult(status -> action.run());
+    }
+
+    private static QueryDeadline deadline() {
+        return QueryDeadline.after(Duration.ofSeconds(30));
+    }
+
+    /**
+     * 풀이 게으르게 채워지지 않도록 최대 크기만큼 동시에 빌렸다가 돌려준다.
+     */
+    private int fillConnectionPool() {
+        int size;
+        try {
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                return 0;
+            }
+            size = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        } catch (SQLException e) {
+            log.warn("failed to inspect connection pool", e);
+            return 0;
+        }
+        List<Connection> borrowed = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                borrowed.add(dataSource.getConnection());
+            }
+        } catch (SQLException e) {
+            log.warn("connection pool warm-up stopped after {} connections", borrowed.size(), e);
+        } finally {
+            for (Connection connection : borrowed) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("failed to return warm-up connection", e);
+                }
+            }
+        }
+        return borrowed.size();
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * 라운드 시간으로 정상 상태를 판정한다.
+     * 첫 라운드(클래스 로딩, 파싱)는 세지 않는다. 가장 빠른 라운드의 tolerance 배 안이면 연속 횟수를 늘리고,
+     * 이전 최솟값보다 tolerance 배 넘게 빨라지면 아직 데워지는 중이므로 그 라운드부터 다시 센다.
+     */
+    static class SteadyState {
+        private final int steadyRounds;
+        private final double tolerance;
+        private long first = -1;
+        private long fastest = -1;
+        private int streak;
+
+        SteadyState(int steadyRounds, double tolerance) {
+            this.steadyRounds = steadyRounds;
+            this.tolerance = tolerance;
+        }
+
+        void add(long roundNanos) {
+            if (first < 0) {
+                first = roundNanos;
+                return;
+            }
+            if (fastest < 0 || roundNanos * tolerance < fastest) {
+                streak = 1;
+            } else if (roundNanos <= fastest * tolerance) {
+                streak++;
+            } else {
+                streak = 0;
+            }
+            fastest = fastest < 0 ? roundNanos : Math.min(fastest, roundNanos);
+        }
+
+        boolean isReached() {
+            return streak >= steadyRounds;
+        }
+    }
+}
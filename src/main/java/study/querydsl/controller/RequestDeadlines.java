@@ -0,0 +1,65 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 요청 마감 시간
+ * X-Request-Timeout-Ms 헤더가 있으면 그 값(member.deadline.max-ms 이하), 없으면 엔드포인트 기본값
+ * <p>
+ * metrics: member.query.timeouts, member.query.cancellations (tag: class)
+ */
+@Component
+public class RequestDeadlines {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final long maxMillis;
+    private final Map<EndpointClass, Long> defaultMillis = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> timeouts = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> cancellations = new EnumMap<>(EndpointClass.class);
+
+    public RequestDeadlines(MeterRegistry meterRegistry,
+                            @Value("${member.deadline.search-ms:10000}") long searchMillis,
+                            @Value("${member.deadline.paging-ms:3000}") long pagingMillis,
+                            @Value("${member.deadline.max-ms:30000}") long maxMillis) {
+        this.maxMillis = maxMillis;
+        defaultMillis.put(EndpointClass.SEARCH, searchMillis);
+        defaultMillis.put(EndpointClass.PAGING, pagingMillis);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String tag = endpointClass.name().toLowerCase();
+            timeouts.put(endpointClass, Counter.builder("member.query.timeouts")
+                    .tag("class", tag).register(meterRegistry));
+            cancellations.put(endpointClass, Counter.builder("member.query.cancellations")
+                    .tag("class", tag).register(meterRegistry));
+        }
+    }
+
+    public QueryDeadline resolve(WebRequest request, EndpointClass endpointClass) {
+        long millis = defaultMillis.getOrDefault(endpointClass, maxMillis);
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (header != null) {
+            try {
+                millis = Long.parseLong(header.trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return QueryDeadline.after(Duration.ofMillis(Math.max(1, Math.min(millis, maxMillis))));
+    }
+
+    public void timedOut(EndpointClass endpointClass) {
+        timeouts.get(endpointClass).increment();
+    }
+
+    public void cancelled(EndpointClass endpointClass) {
+        cancellations.get(endpointClass).increment();
+    }
+}
@@ -0,0 +1,80 @@
+package study.querydsl.controller;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 백그라운드 초기 데이터({@link InitMember}) 진행 상황
+ * readiness 그룹에 들어 있어서 넣는 동안은 OUT_OF_SERVICE, 실패하면 DOWN 이다.
+ * (management.endpoint.health.group.readiness.include) 초기 데이터를 넣지 않는 프로필에서는 항상 UP
+ */
+@Component
+public class SeedProgress implements HealthIndicator {
+
+    public enum Status {IDLE, RUNNING, DONE, FAILED}
+
+    private volatile Status status = Status.IDLE;
+    private volatile long total;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile String error;
+    private final AtomicLong inserted = new AtomicLong();
+
+    void start(long total) {
+        this.total = total;
+        this.startedNanos = System.nanoTime();
+        this.status = Status.RUNNING;
+    }
+
+    void inserted(long count) {
+        inserted.addAndGet(count);
+    }
+
+    void done() {
+        finishedNanos = System.nanoTime();
+        status = Status.DONE;
+    }
+
+    void failed(Throwable e) {
+        finishedNanos = System.nanoTime();
+        error = e.toString();
+        status = Status.FAILED;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Map<String, Object> snapshot() {
+        Status current = status;
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("status", current);
+        snapshot.put("inserted", inserted.get());
+        snapshot.put("total", total);
+        if (current != Status.IDLE) {
+            long end = current == Status.RUNNING ? System.nanoTime() : finishedNanos;
+            snapshot.put("elapsedMs", (end - startedNanos) / 1_000_000);
+        }
+        if (error != null) {
+            snapshot.put("error", error);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Health health() {
+        switch (status) {
+            case RUNNING:
+                return Health.outOfService().withDetails(snapshot()).build();
+            case FAILED:
+                return Health.down().withDetails(snapshot()).build();
+            default:
+                return Health.up().build();
+        }
+    }
+}
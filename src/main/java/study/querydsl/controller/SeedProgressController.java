@@ -0,0 +1,19 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class SeedProgressController {
+    private final SeedProgress seedProgress;
+
+    //초기 데이터 진행 상황 (status, inserted, total, elapsedMs)
+    @GetMapping("/seed/progress")
+    public Map<String, Object> progress() {
+        return seedProgress.snapshot();
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 시작 시간을 모드(일반, AppCDS, AOT)별로 비교할 수 있게 남긴다.
+ * <ul>
+ *     <li>ready: JVM 시작부터 ApplicationReadyEvent 까지 (member.startup.ready-ms)</li>
+ *     <li>first request: JVM 시작부터 첫 요청 응답까지 (member.startup.first-request-ms)</li>
+ * </ul>
+ * 두 gauge 모두 mode 태그(default, cds, aot, cds+aot)를 단다.
+ * member.startup.exit-on-ready=true 면 ready 직후 종료한다. (AppCDS 학습 실행용, build.gradle cdsClassList)
+ */
+@Slf4j
+@Component
+public class StartupTiming extends OncePerRequestFilter {
+
+    private final boolean exitOnReady;
+    private final String mode = mode();
+    private final AtomicLong readyMillis = new AtomicLong(-1);
+    private final AtomicLong firstRequestMillis = new AtomicLong(-1);
+
+    public StartupTiming(MeterRegistry meterRegistry,
+                         @Value("${member.startup.exit-on-ready:false}") boolean exitOnReady) {
+        this.exitOnReady = exitOnReady;
+        Gauge.builder("member.startup.ready-ms", readyMillis, AtomicLong::get)
+                .description("jvm start to application ready")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        Gauge.builder("member.startup.first-request-ms", firstRequestMillis, AtomicLong::get)
+                .description("jvm start to the first completed request")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void ready(ApplicationReadyEvent event) {
+        readyMillis.set(ManagementFactory.getRuntimeMXBean().getUptime());
+        log.info("startup: ready in {} ms since jvm start (mode: {})", readyMillis.get(), mode);
+        if (exitOnReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (firstRequestMillis.get() < 0
+                    && firstRequestMillis.compareAndSet(-1, ManagementFactory.getRuntimeMXBean().getUptime())) {
+                log.info("startup: first request {} {} completed {} ms since jvm start (mode: {})",
+                        request.getMethod(), request.getRequestURI(), firstRequestMillis.get(), mode);
+            }
+        }
+    }
+
+    private static String mode() {
+        List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        boolean cds = jvmArgs.stream().anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile"));
+        boolean aot = Boolean.getBoolean("springAot");
+        if (cds && aot) {
+            return "cds+aot";
+        }
+        return cds ? "cds" : aot ? "aot" : "default";
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Projections.bean / Projections.fields 를 리플렉션 없이 대신한다.
+ * 기본 생성자와 setter 를 메서드 참조로 받아서 행마다 그대로 호출한다. (별칭으로 필드를 찾지 않는다)
+ * QBean 과 같이 null 값은 설정하지 않는다.
+ * <pre>
+ * DtoProjection.of(UserDto::new,
+ *         DtoProjection.bind(member.username, UserDto::setName),
+ *         DtoProjection.bind(member.age, UserDto::setAge))
+ * </pre>
+ * 생성자 방식은 @QueryProjection 으로 생성되는 QMemberDto, QUserDto 를 쓴다.
+ */
+public class DtoProjection<T> extends FactoryExpressionBase<T> {
+
+    private final Supplier<? extends T> factory;
+    private final List<Binding<T, ?>> bindings;
+    private final List<Expression<?>> args;
+
+    @SafeVarargs
+    public static <T> DtoProjection<T> of(Supplier<T> factory, Binding<T, ?>... bindings) {
+        return new DtoProjection<>(factory, Arrays.asList(bindings));
+    }
+
+    public static <T, V> Binding<T, V> bind(Expression<V> expression, BiConsumer<T, ? super V> setter) {
+        return new Binding<>(expression, setter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DtoProjection(Supplier<T> factory, List<Binding<T, ?>> bindings) {
+        super((Class<? extends T>) factory.get().getClass());
+        this.factory = factory;
+        this.bindings = bindings;
+        List<Expression<?>> args = new ArrayList<>(bindings.size());
+        for (Binding<T, ?> binding : bindings) {
+            args.add(binding.expression);
+        }
+        this.args = Collections.unmodifiableList(args);
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    public T newInstance(Object... values) {
+        T dto = factory.get();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                bindings.get(i).set(dto, values[i]);
+            }
+        }
+        return dto;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof DtoProjection)) {
+            return false;
+        }
+        DtoProjection<?> other = (DtoProjection<?>) obj;
+        return getType().equals(other.getType()) && bindings.equals(other.bindings);
+    }
+
+    public static final class Binding<T, V> {
+        private final Expression<V> expression;
+        private final BiConsumer<T, ? super V> setter;
+
+        private Binding(Expression<V> expression, BiConsumer<T, ? super V> setter) {
+            this.expression = expression;
+            this.setter = setter;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void set(T dto, Object value) {
+            setter.accept(dto, (V) value);
+        }
+    }
+}
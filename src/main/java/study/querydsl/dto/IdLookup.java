@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * id 목록으로 한 번에 조회한 결과
+ * found 는 요청한 id 순서 그대로(중복 id 는 한 번), 없는 id 는 missing 에 요청 순서대로 담는다.
+ */
+@Getter
+@ToString
+public class IdLookup<T> {
+    private final List<T> found;
+    private final List<Long> missing;
+
+    public IdLookup(List<T> found, List<Long> missing) {
+        this.found = found;
+        this.missing = missing;
+    }
+}
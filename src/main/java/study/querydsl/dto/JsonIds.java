@@ -0,0 +1,56 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.cfg.ContextAttributes;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * 회원/팀 id 의 JSON 표현
+ * 기본은 숫자, ObjectMapper 기본 attribute {@link #AS_STRINGS} 가 true 면 문자열로 쓴다. (member.web.ids-as-strings)
+ * NodeLocalIds 의 63bit id 는 JavaScript 의 안전한 정수 범위(2^53)를 넘으므로 JS 클라이언트는 문자열을 쓰는 것이 안전하다.
+ */
+public final class JsonIds {
+
+    public static final String AS_STRINGS = "member.ids-as-strings";
+
+    private JsonIds() {
+    }
+
+    public static ContextAttributes attributes(boolean asStrings) {
+        return ContextAttributes.getEmpty().withSharedAttribute(AS_STRINGS, asStrings);
+    }
+
+    static void write(JsonGenerator gen, SerializerProvider provider, long id) throws IOException {
+        if (Boolean.TRUE.equals(provider.getAttribute(AS_STRINGS))) {
+            gen.writeString(Long.toString(id));
+        } else {
+            gen.writeNumber(id);
+        }
+    }
+
+    static void writeNullable(JsonGenerator gen, SerializerProvider provider, Long id) throws IOException {
+        if (id == null) {
+            gen.writeNull();
+        } else {
+            write(gen, provider, id);
+        }
+    }
+
+    /**
+     * {@code @JsonSerialize(using = JsonIds.Serializer.class)} 로 Long id 필드에 붙인다.
+     */
+    public static class Serializer extends StdSerializer<Long> {
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long id, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            write(gen, provider, id);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 외부 시스템에서 동기화하는 회원 (username 기준으로 insert/update)
+ */
+@Data
+@NoArgsConstructor
+public class MemberImport {
+    private String username;
+    private int age;
+    private String teamName;
+
+    public MemberImport(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
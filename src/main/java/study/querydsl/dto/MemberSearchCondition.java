@@ -2,6 +2,8 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class MemberSearchCondition {
     //회원명, 팀명, 나이(ageGoe, ageLoe)
@@ -9,4 +11,9 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+    //여러 회원명, 팀 id 중 하나 (값이 많으면 staging 테이블을 거친다)
+    private List<String> usernames;
+    private List<Long> teamIds;
+    //보관(archive)된 회원까지 검색
+    private boolean includeArchived;
 }
@@ -0,0 +1,279 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 대량 조회용 MemberTeamDto 컬럼 저장 형식
+ * 행마다 객체를 만들지 않고 컬럼별 primitive 배열에 담는다.
+ * 팀은 사전(dictionary)으로 인코딩해서 행에는 팀 코드(int)만 저장한다. (-1 = 팀 없음)
+ */
+@JsonSerialize(using = MemberTeamColumns.Serializer.class)
+public class MemberTeamColumns implements Iterable<MemberTeamColumns.Row> {
+
+    private static final int NO_TEAM = -1;
+
+    private final int size;
+    private final long[] memberIds;
+    private final String[] usernames;
+    private final int[] ages;
+    private final int[] teamCodes;
+    private final long[] teamIds;
+    private final String[] teamNames;
+
+    private MemberTeamColumns(int size, long[] memberIds, String[] usernames, int[] ages, int[] teamCodes,
+                              long[] teamIds, String[] teamNames) {
+        this.size = size;
+        this.memberIds = memberIds;
+        this.usernames = usernames;
+        this.ages = ages;
+        this.teamCodes = teamCodes;
+        this.teamIds = teamIds;
+        this.teamNames = teamNames;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getMemberId(int index) {
+        checkIndex(index);
+        return memberIds[index];
+    }
+
+    public String getUsername(int index) {
+        checkIndex(index);
+        return usernames[index];
+    }
+
+    public int getAge(int index) {
+        checkIndex(index);
+        return ages[index];
+    }
+
+    public boolean hasTeam(int index) {
+        checkIndex(index);
+        return teamCodes[index] != NO_TEAM;
+    }
+
+    public long getTeamId(int index) {
+        checkIndex(index);
+        int code = teamCodes[index];
+        if (code == NO_TEAM) {
+            throw new IllegalStateException("row " + index + " has no team");
+        }
+        return teamIds[code];
+    }
+
+    public String getTeamName(int index) {
+        checkIndex(index);
+        int code = teamCodes[index];
+        return code == NO_TEAM ? null : teamNames[code];
+    }
+
+    public int getTeamCount() {
+        return teamIds.length;
+    }
+
+    /**
+     * 반복자는 하나의 Row 뷰를 계속 재사용한다. (행마다 할당 없음)
+     * next() 로 받은 Row 를 보관하면 안 된다.
+     */
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            private final Row row = new Row();
+
+            @Override
+            public boolean hasNext() {
+                return row.index + 1 < size;
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                row.index++;
+                return row;
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    public final class Row {
+        private int index = -1;
+
+        private Row() {
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getMemberId() {
+            return memberIds[index];
+        }
+
+        public String getUsername() {
+            return usernames[index];
+        }
+
+        public int getAge() {
+            return ages[index];
+        }
+
+        public boolean hasTeam() {
+            return teamCodes[index] != NO_TEAM;
+        }
+
+        public long getTeamId() {
+            return MemberTeamColumns.this.getTeamId(index);
+        }
+
+        public String getTeamName() {
+            return MemberTeamColumns.this.getTeamName(index);
+        }
+    }
+
+    public static class Builder {
+        private int size;
+        private long[] memberIds = new long[16];
+        private String[] usernames = new String[16];
+        private int[] ages = new int[16];
+        private int[] teamCodes = new int[16];
+        private long[] teamIds = new long[4];
+        private String[] teamNames = new String[4];
+        private int teamCount;
+        //팀 id -> 팀 코드 open addressing 표 (박싱 없이, 비어 있는 칸은 code 0, 저장은 code + 1)
+        private long[] slotTeamIds = new long[8];
+        private int[] slotCodes = new int[8];
+
+        private Builder() {
+        }
+
+        public Builder add(long memberId, String username, int age, Long teamId, String teamName) {
+            if (size == memberIds.length) {
+                int capacity = size * 2;
+                memberIds = Arrays.copyOf(memberIds, capacity);
+                usernames = Arrays.copyOf(usernames, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teamCodes = Arrays.copyOf(teamCodes, capacity);
+            }
+            memberIds[size] = memberId;
+            usernames[size] = username;
+            ages[size] = age;
+            teamCodes[size] = teamId == null ? NO_TEAM : teamCode(teamId, teamName);
+            size++;
+            return this;
+        }
+
+        private int teamCode(long teamId, String teamName) {
+            int slot = slot(slotTeamIds, slotCodes, teamId);
+            if (slotCodes[slot] != 0) {
+                return slotCodes[slot] - 1;
+            }
+            if (teamCount == teamIds.length) {
+                teamIds = Arrays.copyOf(teamIds, teamCount * 2);
+                teamNames = Arrays.copyOf(teamNames, teamCount * 2);
+            }
+            teamIds[teamCount] = teamId;
+            teamNames[teamCount] = teamName;
+            slotTeamIds[slot] = teamId;
+            slotCodes[slot] = teamCount + 1;
+            //채운 비율 1/2 를 넘으면 두 배로
+            if ((teamCount + 1) * 2 > slotCodes.length) {
+                rehash();
+            }
+            return teamCount++;
+        }
+
+        private void rehash() {
+            long[] newTeamIds = new long[slotTeamIds.length * 2];
+            int[] newCodes = new int[slotCodes.length * 2];
+            for (int i = 0; i < slotCodes.length; i++) {
+                if (slotCodes[i] != 0) {
+                    int slot = slot(newTeamIds, newCodes, slotTeamIds[i]);
+                    newTeamIds[slot] = slotTeamIds[i];
+                    newCodes[slot] = slotCodes[i];
+                }
+            }
+            slotTeamIds = newTeamIds;
+            slotCodes = newCodes;
+        }
+
+        //teamId 가 있는 칸 또는 처음 만나는 빈 칸 (linear probing)
+        private static int slot(long[] slotTeamIds, int[] slotCodes, long teamId) {
+            int mask = slotCodes.length - 1;
+            int slot = Long.hashCode(teamId * 0x9E3779B97F4A7C15L) & mask;
+            while (slotCodes[slot] != 0 && slotTeamIds[slot] != teamId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        public MemberTeamColumns build() {
+            return new MemberTeamColumns(size,
+                    Arrays.copyOf(memberIds, size),
+                    Arrays.copyOf(usernames, size),
+                    Arrays.copyOf(ages, size),
+                    Arrays.copyOf(teamCodes, size),
+                    Arrays.copyOf(teamIds, teamCount),
+                    Arrays.copyOf(teamNames, teamCount));
+        }
+    }
+
+    /**
+     * List&lt;MemberTeamDto&gt; 와 같은 JSON 형태로 컬럼을 직접 쓴다. (id 는 {@link JsonIds})
+     */
+    public static class Serializer extends StdSerializer<MemberTeamColumns> {
+
+        public Serializer() {
+            super(MemberTeamColumns.class);
+        }
+
+        @Override
+        public void serialize(MemberTeamColumns columns, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartArray();
+            for (int i = 0; i < columns.size; i++) {
+                gen.writeStartObject();
+                gen.writeFieldName("memberId");
+                JsonIds.write(gen, provider, columns.memberIds[i]);
+                gen.writeStringField("username", columns.usernames[i]);
+                gen.writeNumberField("age", columns.ages[i]);
+                int code = columns.teamCodes[i];
+                if (code == NO_TEAM) {
+                    gen.writeNullField("teamId");
+                    gen.writeNullField("teamName");
+                } else {
+                    gen.writeFieldName("teamId");
+                    JsonIds.write(gen, provider, columns.teamIds[code]);
+                    gen.writeStringField("teamName", columns.teamNames[code]);
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package study.querydsl.dto;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.querydsl.core.annotations.QueryProjection;
 import lombok.Data;
 
+import java.io.IOException;
+
 @Data
+@JsonSerialize(using = MemberTeamDto.Serializer.class)
 public class MemberTeamDto {
     private Long memberId;
     private String username;
@@ -20,4 +29,39 @@ public class MemberTeamDto {
         this.teamId = teamId;
         this.teamName = teamName;
     }
+
+    /**
+     * 필드 이름을 미리 인코딩해 두고 필드를 직접 읽어서 쓴다. (BeanSerializer 와 같은 JSON 형태)
+     * id 는 {@link JsonIds} 설정에 따라 숫자 또는 문자열로 쓴다.
+     */
+    public static class Serializer extends StdSerializer<MemberTeamDto> {
+
+        static final Serializer INSTANCE = new Serializer();
+
+        private static final SerializableString MEMBER_ID = new SerializedString("memberId");
+        private static final SerializableString USERNAME = new SerializedString("username");
+        private static final SerializableString AGE = new SerializedString("age");
+        private static final SerializableString TEAM_ID = new SerializedString("teamId");
+        private static final SerializableString TEAM_NAME = new SerializedString("teamName");
+
+        public Serializer() {
+            super(MemberTeamDto.class);
+        }
+
+        @Override
+        public void serialize(MemberTeamDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeFieldName(MEMBER_ID);
+            JsonIds.writeNullable(gen, provider, dto.memberId);
+            gen.writeFieldName(USERNAME);
+            gen.writeString(dto.username);
+            gen.writeFieldName(AGE);
+            gen.writeNumber(dto.age);
+            gen.writeFieldName(TEAM_ID);
+            JsonIds.writeNullable(gen, provider, dto.teamId);
+            gen.writeFieldName(TEAM_NAME);
+            gen.writeString(dto.teamName);
+            gen.writeEndObject();
+        }
+    }
 }
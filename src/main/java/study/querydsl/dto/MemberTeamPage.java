@@ -0,0 +1,61 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * /v2, /v3 응답
+ * PageImpl 의 pageable, sort 객체 그래프 대신 content, page, size, total, hasNext 만 내려준다.
+ */
+@Getter
+@JsonSerialize(using = MemberTeamPage.Serializer.class)
+public class MemberTeamPage {
+    private final List<MemberTeamDto> content;
+    private final int page;
+    private final int size;
+    private final long total;
+    private final boolean hasNext;
+
+    public MemberTeamPage(List<MemberTeamDto> content, int page, int size, long total, boolean hasNext) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.total = total;
+        this.hasNext = hasNext;
+    }
+
+    public static MemberTeamPage of(Page<MemberTeamDto> page) {
+        return new MemberTeamPage(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.hasNext());
+    }
+
+    public static class Serializer extends StdSerializer<MemberTeamPage> {
+
+        public Serializer() {
+            super(MemberTeamPage.class);
+        }
+
+        @Override
+        public void serialize(MemberTeamPage page, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("content");
+            for (MemberTeamDto dto : page.content) {
+                MemberTeamDto.Serializer.INSTANCE.serialize(dto, gen, provider);
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("page", page.page);
+            gen.writeNumberField("size", page.size);
+            gen.writeNumberField("total", page.total);
+            gen.writeBooleanField("hasNext", page.hasNext);
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 팀별 회원 나이 집계 (팀 없는 회원은 teamId, teamName 이 null)
+ * 평균은 합칠 수 없으므로 합과 수를 들고 있다가 마지막에 나눈다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class TeamAgeStats {
+    @JsonSerialize(using = JsonIds.Serializer.class)
+    private final Long teamId;
+    private final String teamName;
+    private final long count;
+    private final long ageSum;
+    private final int minAge;
+    private final int maxAge;
+
+    public TeamAgeStats(Long teamId, String teamName, long count, long ageSum, int minAge, int maxAge) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.count = count;
+        this.ageSum = ageSum;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    public double getAverageAge() {
+        return count == 0 ? 0 : (double) ageSum / count;
+    }
+
+    public TeamAgeStats merge(TeamAgeStats other) {
+        return new TeamAgeStats(teamId, teamName, count + other.count, ageSum + other.ageSum,
+                Math.min(minAge, other.minAge), Math.max(maxAge, other.maxAge));
+    }
+}
@@ -0,0 +1,5 @@
+package study.querydsl.dto;
+
+public enum UpsertOutcome {
+    INSERTED, UPDATED
+}
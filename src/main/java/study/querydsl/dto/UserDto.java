@@ -1,5 +1,6 @@
 package study.querydsl.dto;
 
+import com.querydsl.core.annotations.QueryProjection;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -9,6 +10,7 @@ public class UserDto {
     private String name;
     private int age;
 
+    @QueryProjection
     public UserDto(String name, int age) {
         this.name = name;
         this.age = age;
@@ -1,14 +1,19 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.engine.spi.ManagedEntity;
+import study.querydsl.repository.support.DataVersionListener;
 import javax.persistence.*;
 @Entity
+@EntityListeners(DataVersionListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "node-local-id")
+    @GenericGenerator(name = "node-local-id", strategy = "study.querydsl.entity.id.NodeLocalIdGenerator")
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -30,8 +35,19 @@ public class Member {
             changeTeam(team);
         }
     }
+    //team.members 에 추가하지 않고 팀 참조만 건다 (초기 데이터처럼 getReference 로 얻은 팀에 대량으로 넣을 때)
+    //bytecode enhancement 가 적용되어 있으면 필드 쓰기에도 연관관계 관리가 붙지만 초기화 안 된 컬렉션은 로딩하지 않는다
+    public static Member withTeamReference(String username, int age, Team team) {
+        Member member = new Member(username, age);
+        member.team = team;
+        return member;
+    }
     public void changeTeam(Team team) {
         this.team = team;
-        team.getMembers().add(this);
+        //bytecode enhancement 가 적용되어 있으면 연관관계 관리가 이미 team.members 에 추가했다
+        //(초기화 안 된 컬렉션은 로딩하지 않고 add 만 예약된다) 적용 안 된 경우에만 직접 추가
+        if (!(this instanceof ManagedEntity)) {
+            team.getMembers().add(this);
+        }
     }
 }
@@ -1,19 +1,23 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import study.querydsl.repository.support.DataVersionListener;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(DataVersionListener.class)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "node-local-id")
+    @GenericGenerator(name = "node-local-id", strategy = "study.querydsl.entity.id.NodeLocalIdGenerator")
     @Column(name = "team_id")
     private Long id;
     private String name;
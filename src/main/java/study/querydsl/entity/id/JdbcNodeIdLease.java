@@ -0,0 +1,49 @@
+package study.querydsl.entity.id;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * node_id_lease 테이블에 임대 구간의 끝(high water)을 남기는 {@link NodeLocalIds.Lease}
+ * 시작할 때와 NodeLocalIds 의 연장 스레드에서만 불린다. 시작 시 다른 트랜잭션에 섞이지 않도록 별도 트랜잭션으로 커밋한다.
+ */
+public class JdbcNodeIdLease implements NodeLocalIds.Lease {
+
+    private final int nodeId;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JdbcNodeIdLease(int nodeId, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.nodeId = nodeId;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public long acquire(long from, long millis) {
+        try {
+            return transactionTemplate.execute(status -> lockAndAdvance(from, millis));
+        } catch (DuplicateKeyException e) {
+            //같은 노드 id 의 다른 프로세스가 먼저 행을 만들었다
+            return transactionTemplate.execute(status -> lockAndAdvance(from, millis));
+        }
+    }
+
+    private long lockAndAdvance(long from, long millis) {
+        List<Long> highWater = jdbcTemplate.queryForList(
+                "select high_water from node_id_lease where node_id = ? for update", Long.class, nodeId);
+        if (highWater.isEmpty()) {
+            jdbcTemplate.update("insert into node_id_lease (node_id, high_water) values (?, ?)", nodeId, from + millis);
+            return from;
+        }
+        long start = Math.max(from, highWater.get(0));
+        jdbcTemplate.update("update node_id_lease set high_water = ? where node_id = ?", start + millis, nodeId);
+        return start;
+    }
+}
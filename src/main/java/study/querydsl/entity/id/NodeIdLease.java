@@ -0,0 +1,21 @@
+package study.querydsl.entity.id;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 노드별 id 논리 시각 임대 (node_id_lease 테이블 정의용, 읽고 쓰는 것은 {@link JdbcNodeIdLease})
+ * highWater 까지의 논리 시각은 이미 임대된 것이므로 다음 임대는 그 뒤에서 시작한다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class NodeIdLease {
+    @Id
+    private Integer nodeId;
+    private long highWater;
+}
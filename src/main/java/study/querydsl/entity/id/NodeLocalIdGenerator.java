@@ -0,0 +1,33 @@
+package study.querydsl.entity.id;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+/**
+ * {@link NodeLocalIds} 를 사용하는 Hibernate id 생성기
+ * 노드 id 는 hibernate 설정 member.id.node-id 로 지정한다. (spring.jpa.properties.member.id.node-id)
+ */
+public class NodeLocalIdGenerator implements IdentifierGenerator {
+
+    public static final String NODE_ID = "member.id.node-id";
+
+    private NodeLocalIds ids;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object nodeId = serviceRegistry.getService(ConfigurationService.class).getSettings().get(NODE_ID);
+        ids = NodeLocalIds.forNode(nodeId == null ? 0 : Integer.parseInt(nodeId.toString()));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return ids.next();
+    }
+}
@@ -0,0 +1,213 @@
+package study.querydsl.entity.id;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 노드별로 DB 없이 발급하는 시간순 64bit id
+ * <pre>
+ * | 0 | timestamp 41bit (EPOCH 이후 ms) | node 10bit | sequence 12bit |
+ * </pre>
+ * (timestamp, sequence) 를 AtomicLong 하나에 담아 CAS 로 증가시키므로 락이 없다.
+ * 같은 ms 에 sequence 가 넘치거나 시계가 뒤로 가면 논리 시각을 1ms 씩 앞당겨서 계속 발급한다.
+ * (실제 시계가 논리 시각을 따라잡으면 다시 실제 시각을 사용)
+ * <p>
+ * {@link #useLease} 로 임대를 걸면 논리 시각 구간을 임대받은 범위 안에서만 발급한다.
+ * 재시작하거나 같은 노드 id 로 다른 JVM 이 떠도 이전에 임대된 구간 뒤에서 시작하므로,
+ * 대량 발급으로 논리 시각이 실제 시각보다 앞서 있었더라도 id 가 다시 발급되지 않는다.
+ * 임대는 만료 전(남은 기간 1/4)에 백그라운드로 연장한다. 연장이 늦어 구간을 다 쓰면 발급 스레드는 연장을 기다리고,
+ * 임대 기간 안에 연장되지 않으면 IllegalStateException 으로 실패한다.
+ * <p>
+ * 63bit id 는 JavaScript 의 안전한 정수 범위(2^53)를 넘는다. JS 클라이언트는 member.web.ids-as-strings 로 문자열 id 를 받는다. (JsonIds)
+ */
+@Slf4j
+public class NodeLocalIds {
+
+    public static final long EPOCH = Instant.parse("2022-01-01T00:00:00Z").toEpochMilli();
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final ConcurrentHashMap<Integer, NodeLocalIds> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * 노드의 논리 시각(EPOCH 이후 ms) 구간 임대
+     */
+    public interface Lease {
+        /**
+         * @return 이 노드가 [start, start + millis) 를 쓸 수 있는 start (from 이상, 이전에 임대된 어떤 구간보다도 뒤)
+         */
+        long acquire(long from, long millis);
+    }
+
+    private final int nodeId;
+    private final long nodeBits;
+    private final LongSupplier clock;
+    //(timestamp << SEQUENCE_BITS) | sequence
+    private final AtomicLong last = new AtomicLong();
+    private final AtomicLong lastWallClock = new AtomicLong();
+    private final AtomicLong clockRollbacks = new AtomicLong();
+
+    private volatile Lease lease;
+    private volatile long leaseEnd = Long.MAX_VALUE;
+    private long leaseMillis;
+    private final AtomicBoolean renewing = new AtomicBoolean();
+    private ExecutorService renewer;
+
+    NodeLocalIds(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * 같은 노드 id 는 한 JVM 안에서 항상 같은 인스턴스를 공유해야 id 가 겹치지 않는다.
+     * (Hibernate 생성기와 JDBC batch insert 가 같은 인스턴스를 쓴다)
+     */
+    public static NodeLocalIds forNode(int nodeId) {
+        return INSTANCES.computeIfAbsent(nodeId, id -> new NodeLocalIds(id, System::currentTimeMillis));
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 지금부터 임대받은 구간 안에서만 발급한다. 첫 구간은 바로 임대한다.
+     */
+    public synchronized void useLease(Lease lease, long leaseMillis) {
+        if (leaseMillis < 4) {
+            throw new IllegalArgumentException("leaseMillis must be at least 4: " + leaseMillis);
+        }
+        this.leaseMillis = leaseMillis;
+        if (renewer != null) {
+            renewer.shutdown();
+        }
+        this.renewer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "node-local-id-lease-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lease = lease;
+        this.leaseEnd = 0;
+        renew(Math.max(clock.getAsLong() - EPOCH, (last.get() >>> SEQUENCE_BITS) + 1));
+    }
+
+    public long next() {
+        long now = clock.getAsLong() - EPOCH;
+        //여러 스레드가 읽은 시각의 순서가 1ms 정도 어긋나는 것은 되돌림으로 보지 않는다
+        if (now < lastWallClock.getAndAccumulate(now, Math::max) - 1) {
+            clockRollbacks.incrementAndGet();
+        }
+        while (true) {
+            long prev = last.get();
+            //sequence 가 넘치면 timestamp 로 올림된다
+            long next = now > (prev >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : prev + 1;
+            if (lease != null && !leased(next >>> SEQUENCE_BITS)) {
+                continue;
+            }
+            if (last.compareAndSet(prev, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 임대는 백그라운드 스레드만 연장한다. (발급은 Hibernate persist 안에서도 불리므로 락이나 커넥션을 더 잡지 않는다)
+     *
+     * @return 임대 구간 안이면 true, 연장을 기다렸으면 false (논리 시각이 바뀌었을 수 있으니 다시 계산)
+     */
+    private boolean leased(long time) {
+        long end = leaseEnd;
+        if (time < end - leaseMillis / 4) {
+            return true;
+        }
+        renewInBackground(time);
+        if (time < end) {
+            return true;
+        }
+        awaitRenewal(time, end);
+        return false;
+    }
+
+    /**
+     * 구간을 다 쓰면 연장될 때까지 기다린다. 임대 기간 안에 연장되지 않으면(DB 장애, 커넥션 부족) 발급하지 않고 실패한다.
+     */
+    private void awaitRenewal(long time, long end) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        while (leaseEnd == end) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("node " + nodeId + " id lease expired and was not renewed within "
+                        + leaseMillis + " ms");
+            }
+            //연장이 실패했으면 다시 시도시킨다
+            renewInBackground(time);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private void renewInBackground(long from) {
+        if (!renewing.compareAndSet(false, true)) {
+            return;
+        }
+        renewer.execute(() -> {
+            try {
+                renew(from);
+            } catch (RuntimeException e) {
+                log.warn("node {} id lease renewal failed, will retry", nodeId, e);
+            } finally {
+                renewing.set(false);
+            }
+        });
+    }
+
+    /**
+     * from 부터(이미 연장됐으면 건너뜀) 다음 구간을 임대한다.
+     * 다른 JVM 이 그 사이 구간을 가져갔으면 논리 시각을 임대받은 시작 시각으로 옮긴다.
+     */
+    private synchronized void renew(long from) {
+        long end = leaseEnd;
+        if (from < end - leaseMillis / 4) {
+            return;
+        }
+        long start = lease.acquire(Math.max(from, end), leaseMillis);
+        if (start > from) {
+            log.warn("node {} ids jump {} ms ahead to the leased range (restart, or another process uses the same node id)",
+                    nodeId, start - from);
+            last.accumulateAndGet((start << SEQUENCE_BITS) - 1, Math::max);
+        }
+        leaseEnd = start + leaseMillis;
+    }
+
+    /**
+     * 실제 시계가 이전에 읽은 값보다 뒤로 간 것을 감지한 횟수
+     * (대량 발급으로 논리 시각이 실제 시각보다 앞서 있는 것은 세지 않는다)
+     */
+    public long getClockRollbacks() {
+        return clockRollbacks.get();
+    }
+
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH);
+    }
+
+    /**
+     * 주어진 시각 이후에 발급된 어떤 id 보다도 작은 값
+     */
+    public static long lowestIdAt(Instant instant) {
+        return Math.max(0, instant.toEpochMilli() - EPOCH) << (NODE_BITS + SEQUENCE_BITS);
+    }
+}
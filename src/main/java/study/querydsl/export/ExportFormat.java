@@ -0,0 +1,15 @@
+package study.querydsl.export;
+
+public enum ExportFormat {
+    CSV("csv"), JSONL("jsonl");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,81 @@
+package study.querydsl.export;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.controller.ConcurrencyLimiter;
+import study.querydsl.controller.ConcurrencyLimiters;
+import study.querydsl.controller.EndpointClass;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequiredArgsConstructor
+public class MemberExportController {
+    private final MemberExportService exportService;
+    private final ConcurrencyLimiters limiters;
+
+    /**
+     * 실행 중이거나 대기 중인 작업 수는 {@link EndpointClass#EXPORT} 고정 한도로 제한 (작업이 끝나면 반환)
+     * 작업 시간은 요청 지연이 아니므로 한도 계산에 반영하지 않는다.
+     */
+    @PostMapping("/exports/members")
+    public ResponseEntity<MemberExportJob> submit(MemberSearchCondition condition,
+                                                  @RequestParam(defaultValue = "CSV") ExportFormat format) {
+        ConcurrencyLimiter.Permit permit = limiters.acquire(EndpointClass.EXPORT);
+        MemberExportJob job;
+        try {
+            job = exportService.submit(condition, format);
+        } catch (RejectedExecutionException e) {
+            permit.ignore();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many export jobs");
+        } catch (RuntimeException e) {
+            permit.ignore();
+            throw e;
+        }
+        job.getFinished().whenComplete((finished, e) -> permit.ignore());
+        return ResponseEntity.accepted()
+                .location(URI.create("/exports/members/" + job.getId()))
+                .body(job);
+    }
+
+    @GetMapping("/exports/members/{id}")
+    public MemberExportJob status(@PathVariable String id) {
+        return find(id);
+    }
+
+    /**
+     * Resource 로 반환하면 Range 요청은 스프링이 처리한다. (끊긴 다운로드 이어받기)
+     */
+    @GetMapping("/exports/members/{id}/file")
+    public ResponseEntity<Resource> download(@PathVariable String id) {
+        MemberExportJob job = find(id);
+        if (job.getStatus() != MemberExportJob.Status.DONE) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "export job is " + job.getStatus());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(job.getFileName()).build().toString())
+                .body(new FileSystemResource(job.getFile()));
+    }
+
+    private MemberExportJob find(String id) {
+        return exportService.find(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "unknown export job " + id));
+    }
+}
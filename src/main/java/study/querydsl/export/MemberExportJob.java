@@ -0,0 +1,64 @@
+package study.querydsl.export;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+@Getter
+public class MemberExportJob {
+
+    public enum Status {QUEUED, RUNNING, DONE, FAILED}
+
+    private final String id;
+    private final ExportFormat format;
+    private final MemberSearchCondition condition;
+    private final Instant createdAt = Instant.now();
+    @JsonIgnore
+    private final Path file;
+    private volatile Status status = Status.QUEUED;
+    private volatile long rows;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    @JsonIgnore
+    private final CompletableFuture<MemberExportJob> finished = new CompletableFuture<>();
+
+    MemberExportJob(String id, ExportFormat format, MemberSearchCondition condition, Path file) {
+        this.id = id;
+        this.format = format;
+        this.condition = condition;
+        this.file = file;
+    }
+
+    void running() {
+        status = Status.RUNNING;
+    }
+
+    void progress(long rows) {
+        this.rows = rows;
+    }
+
+    void done(long rows) {
+        this.rows = rows;
+        this.finishedAt = Instant.now();
+        this.status = Status.DONE;
+        finished.complete(this);
+    }
+
+    /**
+     * 상태 응답은 공개되므로 예외 메시지(SQL, 경로)는 담지 않는다. 자세한 내용은 서버 로그에 작업 id 로 남는다.
+     */
+    void failed(Throwable e) {
+        this.error = "export failed (job " + id + ")";
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+        finished.completeExceptionally(e);
+    }
+
+    public String getFileName() {
+        return "members-" + id + "." + format.getExtension() + ".gz";
+    }
+}
@@ -0,0 +1,222 @@
+package study.querydsl.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 회원 export 작업
+ * 작업은 전용 bounded executor 에서만 실행되고(큐가 가득 차면 거절), 결과는 gzip 파일로 로컬 디스크에 남는다.
+ * 보관 기간(retention-hours)이 지난 작업과 파일은 주기적으로(cleanup-interval-minutes) 지운다.
+ * (재시작 전에 만든 파일은 작업 정보가 없으므로 파일 수정 시각으로 판단)
+ */
+@Slf4j
+@Service
+public class MemberExportService {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final ObjectWriter jsonWriter;
+    private final Path dir;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final long cleanupIntervalMinutes;
+    private ScheduledExecutorService cleaner;
+    private final ConcurrentHashMap<String, MemberExportJob> jobs = new ConcurrentHashMap<>();
+
+    public MemberExportService(MemberJpaRepository memberJpaRepository,
+                               ObjectMapper objectMapper,
+                               @Value("${member.export.dir:${java.io.tmpdir}/member-export}") String dir,
+                               @Value("${member.export.workers:2}") int workers,
+                               @Value("${member.export.queue-capacity:10}") int queueCapacity,
+                               @Value("${member.export.retention-hours:24}") long retentionHours,
+                               @Value("${member.export.cleanup-interval-minutes:10}") long cleanupIntervalMinutes)
+            throws IOException {
+        this.memberJpaRepository = memberJpaRepository;
+        this.jsonWriter = objectMapper.writerFor(MemberTeamDto.class);
+        this.dir = Files.createDirectories(Paths.get(dir));
+        this.retention = Duration.ofHours(retentionHours);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "member-export-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.cleanupIntervalMinutes = cleanupIntervalMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-export-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::removeExpiredQuietly, 0, cleanupIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @throws java.util.concurrent.RejectedExecutionException 대기 중인 작업이 가득 찬 경우
+     */
+    public MemberExportJob submit(MemberSearchCondition condition, ExportFormat format) {
+        String id = UUID.randomUUID().toString();
+        MemberExportJob job = new MemberExportJob(id, format, condition,
+                dir.resolve(id + "." + format.getExtension() + ".gz"));
+        jobs.put(id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RuntimeException e) {
+            jobs.remove(id);
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<MemberExportJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+        executor.shutdownNow();
+    }
+
+    private void run(MemberExportJob job) {
+        job.running();
+        Path part = job.getFile().resolveSibling(job.getFile().getFileName() + ".part");
+        long[] rows = new long[1];
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(part)), 64 * 1024)) {
+                if (job.getFormat() == ExportFormat.CSV) {
+                    out.write("memberId,username,age,teamId,teamName\n".getBytes(StandardCharsets.UTF_8));
+                }
+                memberJpaRepository.search(job.getCondition(), dto -> {
+                    write(out, job.getFormat(), dto);
+                    if (++rows[0] % 10_000 == 0) {
+                        job.progress(rows[0]);
+                    }
+                });
+            }
+            Files.move(part, job.getFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.done(rows[0]);
+            log.info("member export {} finished. rows={}", job.getId(), rows[0]);
+        } catch (Exception e) {
+            job.failed(e);
+            log.warn("member export {} failed", job.getId(), e);
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void write(OutputStream out, ExportFormat format, MemberTeamDto dto) {
+        try {
+            if (format == ExportFormat.JSONL) {
+                out.write(jsonWriter.writeValueAsBytes(dto));
+            } else {
+                StringBuilder line = new StringBuilder(64)
+                        .append(dto.getMemberId()).append(',')
+                        .append(csv(dto.getUsername())).append(',')
+                        .append(dto.getAge()).append(',')
+                        .append(dto.getTeamId() == null ? "" : dto.getTeamId()).append(',')
+                        .append(csv(dto.getTeamName()));
+                out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private void removeExpiredQuietly() {
+        try {
+            removeExpired();
+        } catch (RuntimeException e) {
+            log.warn("export cleanup failed", e);
+        }
+    }
+
+    void removeExpired() {
+        Instant expiry = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.getFinishedAt() == null || job.getFinishedAt().isAfter(expiry)) {
+                return false;
+            }
+            delete(job.getFile());
+            return true;
+        });
+        //작업 정보가 없는 파일 (재시작 전에 만든 결과, 중단된 .part)
+        Set<Path> active = new HashSet<>();
+        for (MemberExportJob job : jobs.values()) {
+            active.add(job.getFile());
+            active.add(job.getFile().resolveSibling(job.getFile().getFileName() + ".part"));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> !active.contains(file))
+                    .filter(file -> modifiedBefore(file, expiry))
+                    .forEach(this::delete);
+        } catch (IOException e) {
+            log.warn("failed to list export dir {}", dir, e);
+        }
+    }
+
+    private static boolean modifiedBefore(Path file, Instant expiry) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(expiry);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("failed to delete export file {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.importer;
+
+import lombok.Getter;
+
+/**
+ * import 가 중간에 실패함
+ * import 는 batch 단위로 커밋되므로 실패 전에 커밋된 행과 새 팀은 남아 있다. ({@link #getCommitted()})
+ */
+@Getter
+public class CsvImportException extends IllegalStateException {
+
+    private final CsvImportResult committed;
+
+    public CsvImportException(String message, CsvImportResult committed, Throwable cause) {
+        super(message + " (committed before failure: " + committed + ")", cause);
+        this.committed = committed;
+    }
+}
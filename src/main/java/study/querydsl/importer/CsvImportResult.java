@@ -0,0 +1,32 @@
+package study.querydsl.importer;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class CsvImportResult {
+    private final long bytes;
+    private final long rows;
+    private final long batches;
+    private final int createdTeams;
+    private final long parseMillis;
+    private final long totalMillis;
+
+    public CsvImportResult(long bytes, long rows, long batches, int createdTeams, long parseMillis, long totalMillis) {
+        this.bytes = bytes;
+        this.rows = rows;
+        this.batches = batches;
+        this.createdTeams = createdTeams;
+        this.parseMillis = parseMillis;
+        this.totalMillis = totalMillis;
+    }
+
+    public double getGigabytesPerSecondParsed() {
+        return parseMillis == 0 ? 0 : bytes / 1e9 / (parseMillis / 1000.0);
+    }
+
+    public double getRowsPerSecondInserted() {
+        return totalMillis == 0 ? rows : rows * 1000.0 / totalMillis;
+    }
+}
@@ -0,0 +1,161 @@
+package study.querydsl.importer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 줄 경계로 잘린 CSV 구간(username,age,teamName)을 파싱한다. 따옴표/이스케이프는 지원하지 않는다.
+ * 나이는 바이트에서 바로 숫자로 읽고, 팀 이름은 바이트 비교 캐시로 team_id 를 찾기 때문에
+ * 처음 보는 팀 이름이 아니면 String 을 만들지 않는다.
+ */
+class CsvSegmentParser {
+
+    private static final int TEAM_CACHE_SIZE = 1024;
+
+    private final TeamDictionary teams;
+    private final int batchSize;
+    private final Consumer<RowBatch> sink;
+
+    private final byte[][] cachedTeamNames = new byte[TEAM_CACHE_SIZE][];
+    private final long[] cachedTeamIds = new long[TEAM_CACHE_SIZE];
+    private byte[] scratch = new byte[256];
+
+    CsvSegmentParser(TeamDictionary teams, int batchSize, Consumer<RowBatch> sink) {
+        this.teams = teams;
+        this.batchSize = batchSize;
+        this.sink = sink;
+    }
+
+    /**
+     * @return 파싱한 행 수
+     */
+    long parse(ByteBuffer buf, long segmentOffset, boolean skipHeader) {
+        int limit = buf.limit();
+        int pos = 0;
+        if (skipHeader && startsWith(buf, "username")) {
+            while (pos < limit && buf.get(pos) != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+        long rows = 0;
+        RowBatch batch = new RowBatch(batchSize);
+        while (pos < limit) {
+            int lineStart = pos;
+            int firstComma = -1;
+            int secondComma = -1;
+            int end = pos;
+            while (end < limit) {
+                byte b = buf.get(end);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == ',') {
+                    if (firstComma < 0) {
+                        firstComma = end;
+                    } else if (secondComma < 0) {
+                        secondComma = end;
+                    }
+                }
+                end++;
+            }
+            pos = end + 1;
+            int lineEnd = end;
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                continue;
+            }
+            if (firstComma < 0) {
+                throw new IllegalArgumentException("invalid csv line at byte " + (segmentOffset + lineStart));
+            }
+
+            String username = decode(buf, lineStart, firstComma - lineStart);
+            int ageEnd = secondComma < 0 ? lineEnd : secondComma;
+            int age = parseInt(buf, firstComma + 1, ageEnd, segmentOffset);
+            long teamId = secondComma < 0 || secondComma + 1 >= lineEnd
+                    ? RowBatch.NO_TEAM
+                    : teamId(buf, secondComma + 1, lineEnd - secondComma - 1);
+
+            batch.add(username, age, teamId);
+            rows++;
+            if (batch.isFull()) {
+                sink.accept(batch);
+                batch = new RowBatch(batchSize);
+            }
+        }
+        if (batch.size > 0) {
+            sink.accept(batch);
+        }
+        return rows;
+    }
+
+    private long teamId(ByteBuffer buf, int start, int length) {
+        int hash = 1;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buf.get(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (TEAM_CACHE_SIZE - 1);
+        byte[] cached = cachedTeamNames[slot];
+        if (cached != null && equals(cached, buf, start, length)) {
+            return cachedTeamIds[slot];
+        }
+        String name = decode(buf, start, length);
+        long id = teams.idOf(name);
+        cachedTeamNames[slot] = name.getBytes(StandardCharsets.UTF_8);
+        cachedTeamIds[slot] = id;
+        return id;
+    }
+
+    private String decode(ByteBuffer buf, int start, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buf.get(start + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int parseInt(ByteBuffer buf, int start, int end, long segmentOffset) {
+        if (start >= end) {
+            throw new IllegalArgumentException("missing age at byte " + (segmentOffset + start));
+        }
+        boolean negative = buf.get(start) == '-';
+        int value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("invalid age at byte " + (segmentOffset + start));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean equals(byte[] name, ByteBuffer buf, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != buf.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(ByteBuffer buf, String prefix) {
+        if (buf.limit() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buf.get(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package study.querydsl.importer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * --member.import.file=/path/members.csv 로 실행하면 시작 시 CSV 를 import 한다.
+ */
+@Component
+@ConditionalOnProperty("member.import.file")
+@RequiredArgsConstructor
+public class MemberCsvImportRunner implements ApplicationRunner {
+
+    private final MemberCsvImporter importer;
+
+    @Value("${member.import.file}")
+    private String file;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        importer.importFile(Paths.get(file));
+    }
+}
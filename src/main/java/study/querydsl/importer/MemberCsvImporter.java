@@ -0,0 +1,267 @@
+package study.querydsl.importer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.id.NodeLocalIds;
+import study.querydsl.repository.support.DataVersion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 회원 CSV 대량 import (username,age,teamName / 첫 줄이 username 으로 시작하면 헤더로 보고 건너뜀)
+ * <p>
+ * 파일을 줄 경계에 맞춘 구간으로 나누고 구간마다 memory-map 해서 병렬로 파싱한다.
+ * 파싱된 행은 bounded queue 를 거쳐 writer 스레드가 JDBC batch insert 로 넣는다.
+ * (queue 가 차면 파서가 기다리므로 메모리 사용량이 제한된다)
+ * <p>
+ * batch 마다 커밋하므로 전체가 하나의 트랜잭션이 아니다. 실패하면 그때까지 커밋된 행/팀 수를 담은
+ * {@link CsvImportException} 을 던진다.
+ */
+@Slf4j
+@Component
+public class MemberCsvImporter {
+
+    private static final String INSERT_SQL =
+            "insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)";
+    /**
+     * 구간은 다음 줄바꿈까지 늘어나므로 map 한도(2GB)에서 가장 긴 줄 만큼 여유를 둔다.
+     */
+    static final int MAX_LINE_BYTES = 1024 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final NodeLocalIds ids;
+    private final DataVersion dataVersion;
+    private final long segmentBytes;
+    private final int parsers;
+    private final int writers;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public MemberCsvImporter(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             NodeLocalIds ids,
+                             DataVersion dataVersion,
+                             @Value("${member.import.segment-size-mb:64}") int segmentSizeMb,
+                             @Value("${member.import.parsers:0}") int parsers,
+                             @Value("${member.import.writers:2}") int writers,
+                             @Value("${member.import.batch-size:5000}") int batchSize,
+                             @Value("${member.import.queue-capacity:16}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ids = ids;
+        this.dataVersion = dataVersion;
+        this.segmentBytes = Math.min(Integer.MAX_VALUE - MAX_LINE_BYTES, segmentSizeMb * 1024L * 1024L);
+        this.parsers = parsers > 0 ? parsers : Runtime.getRuntime().availableProcessors();
+        this.writers = writers;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public CsvImportResult importFile(Path file) throws IOException {
+        long start = System.nanoTime();
+        TeamDictionary teams = new TeamDictionary(jdbcTemplate, ids);
+        BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong inserted = new AtomicLong();
+        AtomicLong batches = new AtomicLong();
+        long size = Files.size(file);
+
+        ExecutorService writerPool = Executors.newFixedThreadPool(writers);
+        ExecutorService parserPool = Executors.newFixedThreadPool(parsers);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Future<?>> writerFutures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                writerFutures.add(writerPool.submit(() -> write(queue, failure, inserted, batches)));
+            }
+
+            List<Future<Long>> parserFutures = new ArrayList<>();
+            for (long[] segment : split(channel, size, segmentBytes)) {
+                parserFutures.add(parserPool.submit(() -> {
+                    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, segment[0],
+                            segment[1] - segment[0]);
+                    return new CsvSegmentParser(teams, batchSize, batch -> put(queue, batch, failure))
+                            .parse(buf, segment[0], segment[0] == 0);
+                }));
+            }
+            long parsed = 0;
+            for (Future<Long> future : parserFutures) {
+                parsed += await(future, failure);
+            }
+            long parseEnd = System.nanoTime();
+
+            for (int i = 0; i < writers; i++) {
+                put(queue, RowBatch.END, failure);
+            }
+            for (Future<?> future : writerFutures) {
+                await(future, failure);
+            }
+            if (failure.get() != null) {
+                throw new IllegalStateException("member csv import failed: " + file, failure.get());
+            }
+
+            CsvImportResult result = new CsvImportResult(size, inserted.get(), batches.get(), teams.getCreated(),
+                    TimeUnit.NANOSECONDS.toMillis(parseEnd - start),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.info("member csv import finished. {} parsed rows={} ({} GB/s parsed, {} rows/s inserted)",
+                    result, parsed,
+                    String.format("%.2f", result.getGigabytesPerSecondParsed()),
+                    String.format("%.0f", result.getRowsPerSecondInserted()));
+            return result;
+        } catch (RuntimeException e) {
+            //진행 중인 batch 커밋이 끝난 뒤의 수를 알려준다
+            parserPool.shutdownNow();
+            writerPool.shutdownNow();
+            awaitTermination(writerPool);
+            CsvImportResult committed = new CsvImportResult(size, inserted.get(), batches.get(), teams.getCreated(),
+                    0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.warn("member csv import failed: {}, committed before failure: {}", file, committed);
+            throw new CsvImportException("member csv import failed: " + file, committed,
+                    failure.get() != null ? failure.get() : e);
+        } finally {
+            parserPool.shutdownNow();
+            writerPool.shutdownNow();
+            //실패해도 이미 커밋된 batch 와 새 팀이 있을 수 있다
+            dataVersion.changed();
+        }
+    }
+
+    /**
+     * 구간 크기마다 다음 줄바꿈까지 늘려서 [start, end) 구간으로 나눈다.
+     */
+    static List<long[]> split(FileChannel channel, long size, long segmentBytes) throws IOException {
+        List<long[]> segments = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + segmentBytes);
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end - 1);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end = end - 1 + newline + 1;
+                    break;
+                }
+                end = Math.min(size, end + read);
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("csv segment exceeds the 2GB map limit (line too long) at byte " + start);
+            }
+            segments.add(new long[]{start, end});
+            start = end;
+        }
+        return segments;
+    }
+
+    private void write(BlockingQueue<RowBatch> queue, AtomicReference<Throwable> failure,
+                       AtomicLong inserted, AtomicLong batches) {
+        try {
+            while (true) {
+                RowBatch batch = queue.take();
+                if (batch == RowBatch.END) {
+                    return;
+                }
+                if (failure.get() != null) {
+                    continue;
+                }
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                            @Override
+                            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                                ps.setLong(1, ids.next());
+                                ps.setString(2, batch.usernames[i]);
+                                ps.setInt(3, batch.ages[i]);
+                                if (batch.teamIds[i] == RowBatch.NO_TEAM) {
+                                    ps.setNull(4, Types.BIGINT);
+                                } else {
+                                    ps.setLong(4, batch.teamIds[i]);
+                                }
+                            }
+
+                            @Override
+                            public int getBatchSize() {
+                                return batch.size;
+                            }
+                        }));
+                inserted.addAndGet(batch.size);
+                batches.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService pool) {
+        try {
+            if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("member csv import writers did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void put(BlockingQueue<RowBatch> queue, RowBatch batch, AtomicReference<Throwable> failure) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    throw new IllegalStateException("member csv import aborted", failure.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member csv import interrupted", e);
+        }
+    }
+
+    private static <T> T await(Future<T> future, AtomicReference<Throwable> failure) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member csv import interrupted", e);
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+            throw new IllegalStateException("member csv import failed", e.getCause());
+        }
+    }
+}
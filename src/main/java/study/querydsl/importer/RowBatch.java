@@ -0,0 +1,32 @@
+package study.querydsl.importer;
+
+/**
+ * 파싱된 회원 행 묶음 (insert batch 한 번 분량)
+ */
+class RowBatch {
+
+    static final long NO_TEAM = -1;
+    static final RowBatch END = new RowBatch(0);
+
+    final String[] usernames;
+    final int[] ages;
+    final long[] teamIds;
+    int size;
+
+    RowBatch(int capacity) {
+        this.usernames = new String[capacity];
+        this.ages = new int[capacity];
+        this.teamIds = new long[capacity];
+    }
+
+    void add(String username, int age, long teamId) {
+        usernames[size] = username;
+        ages[size] = age;
+        teamIds[size] = teamId;
+        size++;
+    }
+
+    boolean isFull() {
+        return size == usernames.length;
+    }
+}
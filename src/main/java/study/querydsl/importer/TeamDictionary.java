@@ -0,0 +1,54 @@
+package study.querydsl.importer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.entity.id.NodeLocalIds;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 팀 이름 -> team_id 사전
+ * 시작할 때 기존 팀을 모두 읽어두고, 처음 보는 이름만 팀을 새로 만든다.
+ * insert 는 맵 연산 밖에서 이름별 락으로만 직렬화하므로 다른 이름을 찾는 파서 스레드는 DB 왕복을 기다리지 않는다.
+ */
+class TeamDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NodeLocalIds teamIds;
+    private final ConcurrentHashMap<String, Long> ids = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> insertLocks = new ConcurrentHashMap<>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    TeamDictionary(JdbcTemplate jdbcTemplate, NodeLocalIds teamIds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.teamIds = teamIds;
+        jdbcTemplate.query("select name, team_id from team", rs -> {
+            ids.putIfAbsent(rs.getString(1), rs.getLong(2));
+        });
+    }
+
+    long idOf(String name) {
+        Long id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (insertLocks.computeIfAbsent(name, key -> new Object())) {
+            id = ids.get(name);
+            if (id == null) {
+                id = teamIds.next();
+                jdbcTemplate.update("insert into team (team_id, name) values (?, ?)", id, name);
+                created.incrementAndGet();
+                ids.put(name, id);
+            }
+        }
+        insertLocks.remove(name);
+        return id;
+    }
+
+    /**
+     * import 중에 새로 만든(바로 커밋된) 팀 수
+     */
+    int getCreated() {
+        return created.get();
+    }
+}
@@ -1,20 +1,54 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.IdLookup;
+import study.querydsl.dto.MemberImport;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UpsertOutcome;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.id.NodeLocalIds;
+import study.querydsl.repository.support.DataVersion;
+import study.querydsl.repository.support.MemberSearchPredicates;
+import study.querydsl.repository.support.MemberSearchStaging;
+import study.querydsl.repository.support.QueryDeadline;
 
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-import static org.apache.logging.log4j.util.Strings.isEmpty;
-import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
@@ -23,39 +57,344 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberWriteBuffer writeBuffer;
+    private final JdbcTemplate jdbcTemplate;
+    private final NodeLocalIds ids;
+    private final DataVersion dataVersion;
+    private final MemberSearchStaging searchStaging;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor lookupExecutor;
 
-    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory) {
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+    //id 조회 청크가 이 개수 이상이면 동시에 실행
+    private static final int PARALLEL_CHUNKS = 4;
+    private static final String MERGE_SQL =
+            "merge into member (member_id, username, age, team_id) key (member_id) values (?, ?, ?, ?)";
+
+    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory, MemberWriteBuffer writeBuffer,
+                               JdbcTemplate jdbcTemplate, NodeLocalIds ids, DataVersion dataVersion,
+                               MemberSearchStaging searchStaging, PlatformTransactionManager transactionManager,
+                               @Value("${member.lookup.workers:4}") int lookupWorkers) {
         this.em = em;
         this.queryFactory = queryFactory;
+        this.writeBuffer = writeBuffer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ids = ids;
+        this.dataVersion = dataVersion;
+        this.searchStaging = searchStaging;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        //풀이 밀리면 호출한 스레드에서 실행한다
+        this.lookupExecutor = new ThreadPoolExecutor(lookupWorkers, lookupWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(lookupWorkers * 4),
+                r -> new Thread(r, "member-lookup-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
     }
 
     public void save(Member member) {
         em.persist(member);
     }
 
+    /**
+     * username 기준으로 회원을 insert 또는 update 한다. (MERGE ... KEY(member_id) 를 JDBC batch 로 실행)
+     * 팀 이름과 기존 회원은 한 번에 조회하고, 없는 팀은 새로 만든다.
+     * 이미 영속성 컨텍스트에 올라와 있는 회원 엔티티는 갱신되지 않는다.
+     *
+     * @return 입력 순서와 같은 순서의 처리 결과
+     */
+    @Transactional
+    public List<UpsertOutcome> upsertAll(Collection<MemberImport> imports) {
+        writeBuffer.flush();
+        em.flush();
+        List<MemberImport> rows = new ArrayList<>(imports);
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Long> teamIds = resolveTeamIds(rows);
+        Map<String, Long> memberIds = findMemberIdsByUsername(rows);
+
+        int newCount = 0;
+        for (MemberImport row : rows) {
+            if (!memberIds.containsKey(row.getUsername())) {
+                memberIds.put(row.getUsername(), null);
+                newCount++;
+            }
+        }
+        List<Long> newIds = nextMemberIds(newCount);
+
+        List<UpsertOutcome> outcomes = new ArrayList<>(rows.size());
+        List<Object[]> batch = new ArrayList<>(rows.size());
+        int nextNewId = 0;
+        for (MemberImport row : rows) {
+            Long memberId = memberIds.get(row.getUsername());
+            if (memberId == null) {
+                memberId = newIds.get(nextNewId++);
+                memberIds.put(row.getUsername(), memberId);
+                outcomes.add(UpsertOutcome.INSERTED);
+            } else {
+                outcomes.add(UpsertOutcome.UPDATED);
+            }
+            batch.add(new Object[]{memberId, row.getUsername(), row.getAge(),
+                    row.getTeamName() == null ? null : teamIds.get(row.getTeamName())});
+        }
+        jdbcTemplate.batchUpdate(MERGE_SQL, batch, new int[]{Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.BIGINT});
+        dataVersion.changed();
+        return outcomes;
+    }
+
+    private Map<String, Long> resolveTeamIds(List<MemberImport> rows) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (MemberImport row : rows) {
+            if (row.getTeamName() != null) {
+                names.add(row.getTeamName());
+            }
+        }
+        Map<String, Long> teamIds = new HashMap<>();
+        for (List<String> chunk : chunk(new ArrayList<>(names))) {
+            for (Tuple tuple : queryFactory
+                    .select(team.name, team.id)
+                    .from(team)
+                    .where(team.name.in(chunk))
+                    .fetch()) {
+                teamIds.putIfAbsent(tuple.get(team.name), tuple.get(team.id));
+            }
+        }
+        boolean created = false;
+        for (String name : names) {
+            if (!teamIds.containsKey(name)) {
+                Team newTeam = new Team(name);
+                em.persist(newTeam);
+                teamIds.put(name, newTeam.getId());
+                created = true;
+            }
+        }
+        if (created) {
+            em.flush();
+        }
+        return teamIds;
+    }
+
+    private Map<String, Long> findMemberIdsByUsername(List<MemberImport> rows) {
+        LinkedHashSet<String> usernames = new LinkedHashSet<>();
+        for (MemberImport row : rows) {
+            usernames.add(row.getUsername());
+        }
+        Map<String, Long> memberIds = new HashMap<>();
+        for (List<String> chunk : chunk(new ArrayList<>(usernames))) {
+            for (Tuple tuple : queryFactory
+                    .select(member.username, member.id.min())
+                    .from(member)
+                    .where(member.username.in(chunk))
+                    .groupBy(member.username)
+                    .fetch()) {
+                memberIds.put(tuple.get(member.username), tuple.get(member.id.min()));
+            }
+        }
+        return memberIds;
+    }
+
+    //@GeneratedValue 와 같은 생성기에서 DB 왕복 없이 할당
+    private List<Long> nextMemberIds(int count) {
+        List<Long> newIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            newIds.add(ids.next());
+        }
+        return newIds;
+    }
+
+    private static <T> List<List<T>> chunk(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += LOOKUP_CHUNK_SIZE) {
+            chunks.add(values.subList(i, Math.min(values.size(), i + LOOKUP_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
     public Optional<Member> findById(Long id) {
+        Set<Long> flushed = writeBuffer.flushForRead();
         Member findMember = em.find(Member.class, id);
+        //이미 영속성 컨텍스트에 있던 엔티티라면 write-behind 반영 결과를 다시 읽는다
+        if (findMember != null && flushed.contains(id) && em.contains(findMember)) {
+            em.refresh(findMember);
+        }
         return Optional.ofNullable(findMember);
     }
 
+    /**
+     * id 목록으로 회원을 한 번에 조회한다. (findById 반복 대신)
+     * 영속성 컨텍스트, 2차 캐시에 있는 회원은 그대로 쓰고 나머지만 LOOKUP_CHUNK_SIZE 개씩 IN 으로 조회한다. (Session#byMultipleIds)
+     * 엔티티는 호출한 쪽 영속성 컨텍스트에 올라가야 하므로 청크를 동시에 실행하지 않는다.
+     */
+    public IdLookup<Member> findAllByIds(Collection<Long> memberIds) {
+        //write-behind 반영은 읽기 전용 트랜잭션을 열기 전에 (호출한 쪽 트랜잭션이 있으면 거기에 합류)
+        Set<Long> flushed = writeBuffer.flushForRead();
+        return readOnlyTransaction.execute(status -> {
+            List<Long> distinct = distinct(memberIds);
+            List<Member> loaded = em.unwrap(Session.class)
+                    .byMultipleIds(Member.class)
+                    .enableSessionCheck(true)
+                    .enableOrderedReturn(true)
+                    .withBatchSize(LOOKUP_CHUNK_SIZE)
+                    .multiLoad(distinct);
+            List<Member> found = new ArrayList<>(distinct.size());
+            List<Long> missing = new ArrayList<>();
+            for (int i = 0; i < distinct.size(); i++) {
+                Member findMember = loaded.get(i);
+                if (findMember == null) {
+                    missing.add(distinct.get(i));
+                    continue;
+                }
+                if (flushed.contains(findMember.getId())) {
+                    em.refresh(findMember);
+                }
+                found.add(findMember);
+            }
+            return new IdLookup<>(found, missing);
+        });
+    }
+
+    /**
+     * {@link #findAllByIds} 의 MemberTeamDto 버전
+     * 영속성 컨텍스트에 팀까지 올라와 있는 회원은 쿼리 없이 변환한다.
+     * 나머지 청크가 PARALLEL_CHUNKS 개 이상이고 호출한 쪽에 트랜잭션이 없으면 청크마다 다른 커넥션(읽기 전용 트랜잭션)에서 동시에 조회한다.
+     * 트랜잭션 안에서는 커밋 전 변경이 보이도록 같은 커넥션에서 차례로 조회한다.
+     */
+    public IdLookup<MemberTeamDto> findMemberTeamsByIds(Collection<Long> memberIds) {
+        writeBuffer.flushForRead();
+        List<Long> distinct = distinct(memberIds);
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        Map<Long, MemberTeamDto> byId = new HashMap<>();
+        List<Long> remaining = new ArrayList<>();
+        for (Long memberId : distinct) {
+            MemberTeamDto managed = inTransaction ? managedMemberTeam(memberId) : null;
+            if (managed != null) {
+                byId.put(memberId, managed);
+            } else {
+                remaining.add(memberId);
+            }
+        }
+
+        List<List<Long>> chunks = chunk(remaining);
+        if (chunks.size() >= PARALLEL_CHUNKS && !inTransaction) {
+            List<CompletableFuture<List<MemberTeamDto>>> futures = new ArrayList<>(chunks.size());
+            for (List<Long> chunk : chunks) {
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> readOnlyTransaction.execute(status -> fetchMemberTeams(chunk)), lookupExecutor));
+            }
+            for (CompletableFuture<List<MemberTeamDto>> future : futures) {
+                putAll(byId, join(future));
+            }
+        } else {
+            for (List<Long> chunk : chunks) {
+                putAll(byId, fetchMemberTeams(chunk));
+            }
+        }
+
+        List<MemberTeamDto> found = new ArrayList<>(byId.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long memberId : distinct) {
+            MemberTeamDto dto = byId.get(memberId);
+            if (dto == null) {
+                missing.add(memberId);
+            } else {
+                found.add(dto);
+            }
+        }
+        return new IdLookup<>(found, missing);
+    }
+
+    private MemberTeamDto managedMemberTeam(Long memberId) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        Object entity = session.getPersistenceContext().getEntity(session.generateEntityKey(memberId, persister));
+        if (!(entity instanceof Member)) {
+            return null;
+        }
+        Member managed = (Member) entity;
+        Team managedTeam = managed.getTeam();
+        if (managedTeam != null && !Hibernate.isInitialized(managedTeam)) {
+            return null;
+        }
+        return new MemberTeamDto(managed.getId(), managed.getUsername(), managed.getAge(),
+                managedTeam == null ? null : managedTeam.getId(),
+                managedTeam == null ? null : managedTeam.getName());
+    }
+
+    //청크 길이가 달라도 hibernate.query.in_clause_parameter_padding 으로 같은 SQL 이 된다
+    private List<MemberTeamDto> fetchMemberTeams(List<Long> chunk) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(chunk))
+                .fetch();
+    }
+
+    private static void putAll(Map<Long, MemberTeamDto> byId, List<MemberTeamDto> rows) {
+        for (MemberTeamDto row : rows) {
+            byId.put(row.getMemberId(), row);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static List<Long> distinct(Collection<Long> memberIds) {
+        LinkedHashSet<Long> distinct = new LinkedHashSet<>(memberIds);
+        distinct.remove(null);
+        return new ArrayList<>(distinct);
+    }
+
+    //write-behind 버퍼를 거치는 단건 수정 (member.write-behind.enabled=false 면 바로 반영)
+    public CompletableFuture<Void> addAge(Long memberId, int delta) {
+        return writeBuffer.addAge(memberId, delta);
+    }
+
+    public CompletableFuture<Void> changeUsername(Long memberId, String username) {
+        return writeBuffer.changeUsername(memberId, username);
+    }
+
     public List<Member> findAll() {
+        writeBuffer.flushForRead();
         return em.createQuery("select m from Member m", Member.class)
                 .getResultList();
     }
 
     public List<Member> findAll_Querydsl() {
+        writeBuffer.flushForRead();
         return queryFactory
                 .selectFrom(member)
                 .fetch();
     }
 
     public List<Member> findByUsername(String username) {
+        writeBuffer.flushForRead();
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
                 .getResultList();
     }
 
     public List<Member> findByUsername_Querydsl(String username) {
+        writeBuffer.flushForRead();
         return queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
@@ -63,18 +402,15 @@ public class MemberJpaRepository {
     }
 
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
-        BooleanBuilder builder = new BooleanBuilder();
-        if (hasText(condition.getUsername())) {
-            builder.and(member.username.eq(condition.getUsername()));
-        }
-        if (hasText(condition.getTeamName())) {
-            builder.and(team.name.eq(condition.getTeamName()));
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return new ArrayList<>();
         }
-        if (condition.getAgeGoe() != null) {
-            builder.and(member.age.goe(condition.getAgeGoe()));
-        }
-        if (condition.getAgeLoe() != null) {
-            builder.and(member.age.loe(condition.getAgeLoe()));
+        writeBuffer.flushForRead();
+        //조건 정리, 긴 목록 staging 은 다른 검색과 같이 MemberSearchPredicates 가 맡는다 (null 은 and 에서 무시)
+        BooleanBuilder builder = new BooleanBuilder();
+        for (BooleanExpression predicate : predicates.jpa()) {
+            builder.and(predicate);
         }
         return queryFactory
                 .select(new QMemberTeamDto(
@@ -90,6 +426,11 @@ public class MemberJpaRepository {
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return new ArrayList<>();
+        }
+        writeBuffer.flushForRead();
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -99,34 +440,50 @@ public class MemberJpaRepository {
                         team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .fetch();
     }
 
+    /**
+     * 결과를 List 로 모으지 않고 커서로 읽으면서 한 건씩 넘긴다.
+     * 긴 목록 조건 staging 과 write-behind 반영은 읽기 전용 트랜잭션을 시작하기 전에 한다.
+     */
+    public void search(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return;
+        }
+        writeBuffer.flushForRead();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (CloseableIterator<MemberTeamDto> rows = QueryDeadline.apply(queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(predicates.jpa()), 1.0)
+                    .iterate()) {
+                while (rows.hasNext()) {
+                    consumer.accept(rows.next());
+                }
+            }
+        });
+    }
+
     public List<Member> findMember(MemberSearchCondition condition) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return new ArrayList<>();
+        }
+        writeBuffer.flushForRead();
         return queryFactory
                 .selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .fetch();
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return isEmpty(username) ? null : member.username.eq(username);
-    }
-    private BooleanExpression teamNameEq(String teamName) {
-        return isEmpty(teamName) ? null : team.name.eq(teamName);
-    }
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe == null ? null : member.age.goe(ageGoe);
-    }
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe == null ? null : member.age.loe(ageLoe);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.TeamAgeStats;
+import study.querydsl.repository.support.PartitionedScan;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 전체 회원을 훑는 집계 쿼리
+ * {@link PartitionedScan} 으로 member.id 범위를 나눠서 동시에 실행하고 범위별 결과를 합친다.
+ */
+@Repository
+public class MemberReportRepository {
+
+    private static final Comparator<TeamAgeStats> BY_TEAM = Comparator
+            .comparing(TeamAgeStats::getTeamName, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(TeamAgeStats::getTeamId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final JPAQueryFactory queryFactory;
+    private final PartitionedScan scan;
+
+    public MemberReportRepository(JPAQueryFactory queryFactory, PartitionedScan scan) {
+        this.queryFactory = queryFactory;
+        this.scan = scan;
+    }
+
+    /**
+     * 팀별 회원 수, 나이 합/최소/최대/평균 (팀 이름순, 팀 없는 회원은 마지막)
+     */
+    public List<TeamAgeStats> teamAgeStats() {
+        Map<Long, TeamAgeStats> byTeam = scan.scan(member, member.id, this::teamAgeStatsIn,
+                (left, right) -> PartitionedScan.mergeGroups(left, right, TeamAgeStats::merge));
+        List<TeamAgeStats> result = new ArrayList<>(byTeam.values());
+        result.sort(BY_TEAM);
+        return result;
+    }
+
+    //range 가 null 이면 전체
+    private Map<Long, TeamAgeStats> teamAgeStatsIn(BooleanExpression range) {
+        List<Tuple> rows = QueryDeadline.apply(queryFactory
+                .select(team.id,
+                        team.name,
+                        member.count(),
+                        member.age.sum(),
+                        member.age.min(),
+                        member.age.max())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(range)
+                .groupBy(team.id, team.name), 1.0)
+                .fetch();
+        //팀 없는 회원은 null 키 (HashMap 은 허용한다)
+        Map<Long, TeamAgeStats> byTeam = new HashMap<>();
+        for (Tuple row : rows) {
+            Long teamId = row.get(0, Long.class);
+            byTeam.put(teamId, new TeamAgeStats(teamId,
+                    row.get(1, String.class),
+                    row.get(2, Number.class).longValue(),
+                    row.get(3, Number.class).longValue(),
+                    row.get(4, Number.class).intValue(),
+                    row.get(5, Number.class).intValue()));
+        }
+        return byTeam;
+    }
+}
@@ -3,11 +3,21 @@ package study.querydsl.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.MemberSearchPredicates;
+
 import java.util.List;
+import java.util.Optional;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
+    List<MemberTeamDto> search(MemberSearchCondition condition, SearchEngine engine);
+    MemberTeamColumns searchColumns(MemberSearchCondition condition);
+    Optional<MemberTeamDto> findMemberTeamById(Long memberId, boolean includeArchived);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    //트랜잭션을 열기 전에 staging 한 조건으로 검색 (MemberSearchStaging#predicates)
+    Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, MemberSearchPredicates predicates, Pageable pageable);
+    Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, MemberSearchPredicates predicates, Pageable pageable);
 }
\ No newline at end of file
@@ -1,47 +1,83 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.QueryResults;
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.Tuple;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.sql.SQLQueryFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.archive.MemberArchive;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.MemberSearchPredicates;
+import study.querydsl.repository.support.MemberSearchStaging;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.sql.SMember;
+import study.querydsl.sql.STeam;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
-import static org.apache.logging.log4j.util.Strings.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom {
 
+    private static final SMember sMember = SMember.member;
+    private static final STeam sTeam = STeam.team;
+    //요청 마감까지 남은 시간 중 content 쿼리 몫
+    private static final double CONTENT_SHARE = 0.7;
+
     private final JPAQueryFactory queryFactory;
+    private final SQLQueryFactory sqlQueryFactory;
+    private final MemberWriteBuffer writeBuffer;
+    private final MemberArchive archive;
+    private final MemberSearchStaging searchStaging;
+    //긴 목록 조건 staging 과 write-behind 반영은 이 트랜잭션을 시작하기 전에 한다 (둘 다 자체 트랜잭션으로 커밋하므로)
+    private final TransactionTemplate readOnlyTransaction;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, SQLQueryFactory sqlQueryFactory, MemberWriteBuffer writeBuffer,
+                                MemberArchive archive, MemberSearchStaging searchStaging,
+                                PlatformTransactionManager transactionManager) {
         super(Member.class);
         this.queryFactory = new JPAQueryFactory(em);
+        this.sqlQueryFactory = sqlQueryFactory;
+        this.writeBuffer = writeBuffer;
+        this.archive = archive;
+        this.searchStaging = searchStaging;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     @Override
     //회원명, 팀명, 나이(ageGoe, ageLoe)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return new ArrayList<>();
+        }
+        writeBuffer.flushForRead();
 
         List<MemberTeamDto> result = from(member)
                 .leftJoin(member.team, team)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -50,6 +86,10 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         team.name))
                 .fetch();
 
+        return withArchived(condition, fetchJpa(predicates));
+    }
+
+    private List<MemberTeamDto> fetchJpa(MemberSearchPredicates predicates) {
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
@@ -59,16 +99,189 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         team.name))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .fetch();
     }
 
+    @Override
+    public List<MemberTeamDto> search(MemberSearchCondition condition, SearchEngine engine) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return new ArrayList<>();
+        }
+        writeBuffer.flushForRead();
+        return readOnlyTransaction.execute(status -> {
+            if (engine != SearchEngine.SQL) {
+                //이미 staging, 반영을 마쳤으므로 search(condition) 을 거치지 않는다
+                return withArchived(condition, fetchJpa(predicates));
+            }
+            //엔티티가 필요 없으므로 JPQL 변환, 영속성 컨텍스트를 거치지 않고 ResultSet -> DTO
+            //같은 트랜잭션의 커넥션을 쓰지만 flush 되지 않은 변경은 보이지 않는다
+            return withArchived(condition, sqlQueryFactory
+                    .select(new QMemberTeamDto(
+                            sMember.memberId,
+                            sMember.username,
+                            sMember.age,
+                            sTeam.teamId,
+                            sTeam.name))
+                    .from(sMember)
+                    .leftJoin(sTeam).on(sMember.teamId.eq(sTeam.teamId))
+                    .where(predicates.sql())
+                    .fetch());
+        });
+    }
+
+    @Override
+    public Optional<MemberTeamDto> findMemberTeamById(Long memberId, boolean includeArchived) {
+        writeBuffer.flushForRead();
+        MemberTeamDto found = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.eq(memberId))
+                .fetchOne();
+        if (found != null || !includeArchived) {
+            return Optional.ofNullable(found);
+        }
+        return archive.findById(memberId);
+    }
+
+    //includeArchived 인 경우에만 보관소를 함께 검색 (옮기는 도중이면 양쪽에 있을 수 있으므로 id 로 중복 제거)
+    private List<MemberTeamDto> withArchived(MemberSearchCondition condition, List<MemberTeamDto> hot) {
+        if (!condition.isIncludeArchived()) {
+            return hot;
+        }
+        List<MemberTeamDto> result = new ArrayList<>(hot);
+        Set<Long> ids = new HashSet<>();
+        for (MemberTeamDto dto : hot) {
+            ids.add(dto.getMemberId());
+        }
+        for (MemberTeamDto dto : archive.search(condition)) {
+            if (ids.add(dto.getMemberId())) {
+                result.add(dto);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * DB 결과(count 포함) 뒤에 보관소에만 있는 회원(id 순)을 이어 붙인 목록의 한 페이지
+     * 옮기는 도중이면 양쪽에 있을 수 있으므로 DB 에 남아 있는 id 는 보관소 쪽에서 뺀다. (DB 가 최신)
+     * DB 를 먼저 읽으므로 그 사이에 옮겨진 회원은 빠지지 않고 두 번 보일 수 있다. 한 페이지 안에서는 id 로 중복을 제거한다.
+     */
+    private Page<MemberTeamDto> searchPageWithArchived(MemberSearchCondition condition, MemberSearchPredicates predicates,
+                                                       Pageable pageable) {
+        long hotTotal = QueryDeadline.apply(queryFactory
+                .select(member.id)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(predicates.jpa()), 0.5)
+                .fetchCount();
+        List<MemberTeamDto> content = new ArrayList<>(pageable.getPageSize());
+        if (pageable.getOffset() < hotTotal) {
+            content.addAll(QueryDeadline.apply(queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id,
+                            member.username,
+                            member.age,
+                            team.id,
+                            team.name))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(predicates.jpa())
+                    .offset(pageable.getOffset())
+                    .limit(pageable.getPageSize()), CONTENT_SHARE)
+                    .fetch());
+        }
+        List<MemberTeamDto> archived = archivedOnly(condition);
+        Set<Long> ids = new HashSet<>();
+        for (MemberTeamDto dto : content) {
+            ids.add(dto.getMemberId());
+        }
+        for (long i = Math.max(0, pageable.getOffset() - hotTotal);
+             i < archived.size() && content.size() < pageable.getPageSize(); i++) {
+            MemberTeamDto dto = archived.get((int) i);
+            if (ids.add(dto.getMemberId())) {
+                content.add(dto);
+            }
+        }
+        return new PageImpl<>(content, pageable, hotTotal + archived.size());
+    }
+
+    private List<MemberTeamDto> archivedOnly(MemberSearchCondition condition) {
+        List<MemberTeamDto> archived = archive.search(condition);
+        List<Long> archivedIds = new ArrayList<>(archived.size());
+        for (MemberTeamDto dto : archived) {
+            archivedIds.add(dto.getMemberId());
+        }
+        Set<Long> hot = new HashSet<>();
+        for (int i = 0; i < archivedIds.size(); i += MemberSearchPredicates.IN_LIST_MAX) {
+            hot.addAll(queryFactory
+                    .select(member.id)
+                    .from(member)
+                    .where(member.id.in(archivedIds.subList(i,
+                            Math.min(archivedIds.size(), i + MemberSearchPredicates.IN_LIST_MAX))))
+                    .fetch());
+        }
+        archived.removeIf(dto -> hot.contains(dto.getMemberId()));
+        archived.sort(Comparator.comparing(MemberTeamDto::getMemberId));
+        return archived;
+    }
+
+    @Override
+    public MemberTeamColumns searchColumns(MemberSearchCondition condition) {
+        MemberTeamColumns.Builder columns = MemberTeamColumns.builder();
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return columns.build();
+        }
+        writeBuffer.flushForRead();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (CloseableIterator<Tuple> rows = queryFactory
+                    .select(member.id,
+                            member.username,
+                            member.age,
+                            team.id,
+                            team.name)
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(predicates.jpa())
+                    .iterate()) {
+                while (rows.hasNext()) {
+                    Tuple row = rows.next();
+                    columns.add(row.get(member.id),
+                            row.get(member.username),
+                            row.get(member.age),
+                            row.get(team.id),
+                            row.get(team.name));
+                }
+            }
+        });
+        return columns.build();
+    }
+
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
+        return searchPageSimple(condition, searchStaging.predicates(condition), pageable);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, MemberSearchPredicates predicates,
+                                               Pageable pageable) {
+        if (predicates.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
+        writeBuffer.flushForRead();
+        if (condition.isIncludeArchived()) {
+            return searchPageWithArchived(condition, predicates, pageable);
+        }
+        //count, content 두 쿼리가 같은 timeout 을 쓰므로 반씩
+        QueryResults<MemberTeamDto> results = QueryDeadline.apply(queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -77,12 +290,9 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         team.name))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .limit(pageable.getPageSize()), 0.5)
                 .fetchResults();
         List<MemberTeamDto> content = results.getResults();
         long total = results.getTotal();
@@ -90,13 +300,15 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
     }
 
     public Page<MemberTeamDto> searchPageSimple2(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
+        writeBuffer.flushForRead();
 
         JPQLQuery<MemberTeamDto> jpaQuery = from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -117,10 +329,7 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         team.name))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -131,7 +340,20 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        return searchPageComplex(condition, searchStaging.predicates(condition), pageable);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, MemberSearchPredicates predicates,
+                                               Pageable pageable) {
+        if (predicates.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
+        writeBuffer.flushForRead();
+        if (condition.isIncludeArchived()) {
+            return searchPageWithArchived(condition, predicates, pageable);
+        }
+        List<MemberTeamDto> content = QueryDeadline.apply(queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -140,38 +362,23 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         team.name))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                .where(predicates.jpa())
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .limit(pageable.getPageSize()), CONTENT_SHARE)
                 .fetch();
 
         JPAQuery<Member> countQuery = queryFactory
                 .select(member)
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
+                .where(predicates.jpa());
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        //count 는 content 조회 후 남은 시간 전부
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> QueryDeadline.apply(countQuery, 1.0).fetchCount());
         //return new PageImpl<>(content, pageable, total);
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return isEmpty(username) ? null : member.username.eq(username);
-    }
-    private BooleanExpression teamNameEq(String teamName) {
-        return isEmpty(teamName) ? null : team.name.eq(teamName);
-    }
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe == null ? null : member.age.goe(ageGoe);
-    }
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe == null ? null : member.age.loe(ageLoe);
-    }
+
 
 }
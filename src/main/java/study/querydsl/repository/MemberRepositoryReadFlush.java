@@ -0,0 +1,54 @@
+package study.querydsl.repository;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@link MemberRepository} 의 Spring Data 조회 메서드(findById, findAll, findByUsername, QuerydslPredicateExecutor 등) 앞에서
+ * {@link MemberWriteBuffer#flushForRead()} 를 호출한다.
+ * 리포지토리의 읽기 전용 트랜잭션보다 먼저 반영하도록 프록시 advice 맨 앞에 넣는다.
+ * MemberRepositoryCustom 메서드는 구현(MemberRepositoryImpl)이 직접 반영하고, save/delete/flush 는 반영하지 않는다.
+ */
+@Component
+public class MemberRepositoryReadFlush implements BeanPostProcessor {
+
+    //BeanPostProcessor 는 일찍 만들어지므로 버퍼는 처음 쓸 때 가져온다
+    private final ObjectProvider<MemberWriteBuffer> writeBuffer;
+
+    public MemberRepositoryReadFlush(ObjectProvider<MemberWriteBuffer> writeBuffer) {
+        this.writeBuffer = writeBuffer;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport
+                && MemberRepository.class.equals(((RepositoryFactoryBeanSupport<?, ?, ?>) bean).getObjectType())) {
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                    factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                            proxyFactory.addAdvice(0, (MethodInterceptor) this::invoke)));
+        }
+        return bean;
+    }
+
+    private Object invoke(MethodInvocation invocation) throws Throwable {
+        if (isRead(invocation.getMethod())) {
+            writeBuffer.getObject().flushForRead();
+        }
+        return invocation.proceed();
+    }
+
+    static boolean isRead(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (declaringClass == MemberRepositoryCustom.class || declaringClass == Object.class) {
+            return false;
+        }
+        String name = method.getName();
+        return !name.startsWith("save") && !name.startsWith("delete") && !name.startsWith("flush");
+    }
+}
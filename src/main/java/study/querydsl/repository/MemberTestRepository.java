@@ -1,26 +1,34 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.MemberSearchPredicates;
+import study.querydsl.repository.support.MemberSearchStaging;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
 import java.util.List;
 
-import static org.apache.logging.log4j.util.Strings.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 @Repository
 public class MemberTestRepository extends Querydsl4RepositorySupport {
+    private MemberSearchStaging searchStaging;
+
     public MemberTestRepository(Class<?> domainClass) {
         super(Member.class);
     }
 
+    @Autowired
+    public void setSearchStaging(MemberSearchStaging searchStaging) {
+        this.searchStaging = searchStaging;
+    }
+
     public List<Member> basicSelect() {
         return select(member)
                 .from(member)
@@ -31,54 +39,42 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                 .fetch();
     }
     public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
         JPAQuery<Member> query = selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
+                .where(predicates.jpa());
         List<Member> content = getQuerydsl().applyPagination(pageable, query)
                 .fetch();
         return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
     }
     public Page<Member> applyPagination(MemberSearchCondition condition,
                                         Pageable pageable) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
         return applyPagination(pageable, contentQuery -> contentQuery
                 .selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())));
+                .where(predicates.jpa()));
     }
     public Page<Member> applyPagination2(MemberSearchCondition condition,
                                          Pageable pageable) {
+        MemberSearchPredicates predicates = searchStaging.predicates(condition);
+        if (predicates.isUnsatisfiable()) {
+            return Page.empty(pageable);
+        }
         return applyPagination(pageable, contentQuery -> contentQuery
                         .selectFrom(member)
                         .leftJoin(member.team, team)
-                        .where(usernameEq(condition.getUsername()),
-                                teamNameEq(condition.getTeamName()),
-                                ageGoe(condition.getAgeGoe()),
-                                ageLoe(condition.getAgeLoe())),
+                        .where(predicates.jpa()),
                 countQuery -> countQuery
                         .selectFrom(member)
                         .leftJoin(member.team, team)
-                        .where(usernameEq(condition.getUsername()),
-                                teamNameEq(condition.getTeamName()),
-                                ageGoe(condition.getAgeGoe()),
-                                ageLoe(condition.getAgeLoe()))
+                        .where(predicates.jpa())
         );
     }
-    private BooleanExpression usernameEq(String username) {
-        return isEmpty(username) ? null : member.username.eq(username);
-    }
-    private BooleanExpression teamNameEq(String teamName) {
-        return isEmpty(teamName) ? null : team.name.eq(teamName);
-    }
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe == null ? null : member.age.goe(ageGoe);
-    }
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe == null ? null : member.age.loe(ageLoe);
-    }
 }
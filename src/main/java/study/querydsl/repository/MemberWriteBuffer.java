@@ -0,0 +1,329 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.repository.support.DataVersion;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 회원 단건 수정 write-behind 버퍼 (member.write-behind.enabled=true 일 때만 버퍼링)
+ * <p>
+ * 같은 회원에 대한 수정은 메모리에서 하나로 합쳐지고(나이는 누적, 이름은 마지막 값),
+ * 건수(max-pending) 또는 주기(flush-interval-ms)에 따라 JDBC batch update 한 번으로 반영된다.
+ * <ul>
+ *     <li>durability=BUFFERED: 호출은 바로 반환, 반영 실패 시 다음 flush 에 다시 시도 (프로세스가 죽으면 유실)</li>
+ *     <li>durability=SYNC: 호출자가 받은 future 는 해당 수정이 커밋된 뒤 완료 (group commit)</li>
+ *     <li>ordering=ID: 회원 id 순서로 반영 (락 획득 순서가 고정되어 데드락 방지)</li>
+ *     <li>ordering=ARRIVAL: 각 회원이 처음 버퍼에 들어온 순서대로 반영</li>
+ * </ul>
+ * 반영은 호출한 쪽에 쓰기 트랜잭션이 있으면 그 트랜잭션에 합류한다. (커밋 전 insert 한 회원도 수정되고 락을 기다리지 않는다)
+ * 호출한 쪽 트랜잭션이 롤백되면 반영했던 수정은 다시 버퍼에 넣는다. (SYNC 는 future 를 실패시킨다)
+ * 트랜잭션이 없거나 읽기 전용이면 별도 트랜잭션으로 반영한다.
+ * <p>
+ * 리포지토리 조회 메서드는 조회 전에 {@link #flushForRead()} 를 호출해서 대기 중인 수정을 먼저 반영한다.
+ * 반영에 실패해도 조회는 실패시키지 않는다.
+ * 읽기 전용 트랜잭션 안에서는 반영하지 않는다. (커넥션을 쥔 채 별도 트랜잭션의 커넥션을 기다리면 풀이 고갈된다)
+ * 그래서 읽기 전용 트랜잭션을 여는 쪽(검색 coalescer, 리포지토리의 읽기 전용 TransactionTemplate)은 열기 전에 반영하고,
+ * Spring Data 리포지토리(MemberRepository)의 조회 메서드는 {@link MemberRepositoryReadFlush} 가 트랜잭션 전에 반영한다.
+ * 호출한 쪽이 이미 읽기 전용 트랜잭션을 열었다면 그 뒤의 수정은 보이지 않을 수 있다.
+ */
+@Slf4j
+@Component
+public class MemberWriteBuffer {
+
+    public enum Durability {BUFFERED, SYNC}
+
+    public enum Ordering {ID, ARRIVAL}
+
+    private static final String UPDATE_SQL =
+            "update member set age = age + ?, username = coalesce(?, username) where member_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager em;
+    private final DataVersion dataVersion;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxPending;
+    private final long flushIntervalMillis;
+    private final Durability durability;
+    private final Ordering ordering;
+
+    private final ConcurrentHashMap<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
+
+    public MemberWriteBuffer(JdbcTemplate jdbcTemplate,
+                             EntityManager em,
+                             DataVersion dataVersion,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${member.write-behind.enabled:false}") boolean enabled,
+                             @Value("${member.write-behind.max-pending:1000}") int maxPending,
+                             @Value("${member.write-behind.flush-interval-ms:200}") long flushIntervalMillis,
+                             @Value("${member.write-behind.durability:BUFFERED}") Durability durability,
+                             @Value("${member.write-behind.ordering:ID}") Ordering ordering) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.em = em;
+        this.dataVersion = dataVersion;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.durability = durability;
+        this.ordering = ordering;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flushQuietly();
+    }
+
+    public CompletableFuture<Void> addAge(long memberId, int delta) {
+        return write(memberId, delta, null);
+    }
+
+    public CompletableFuture<Void> changeUsername(long memberId, String username) {
+        return write(memberId, 0, username);
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    private CompletableFuture<Void> write(long memberId, int ageDelta, String username) {
+        if (!enabled) {
+            jdbcTemplate.update(UPDATE_SQL, ageDelta, username, memberId);
+            dataVersion.changed();
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> done = durability == Durability.SYNC ? new CompletableFuture<>() : null;
+        //키(회원 id)별로만 잠그므로 다른 회원 수정과는 경합하지 않는다
+        pending.compute(memberId, (id, update) -> {
+            if (update == null) {
+                update = new PendingUpdate(id, sequence.incrementAndGet());
+            }
+            update.merge(ageDelta, username, done);
+            return update;
+        });
+        if (pending.size() >= maxPending) {
+            scheduler.execute(this::flushQuietly);
+        }
+        return done == null ? CompletableFuture.completedFuture(null) : done;
+    }
+
+    /**
+     * 대기 중인 수정을 모두 반영한다.
+     *
+     * @return 반영된 회원 id (반영한 순서)
+     */
+    public Set<Long> flush() {
+        if (pending.isEmpty()) {
+            return Collections.emptySet();
+        }
+        flushLock.lock();
+        try {
+            List<PendingUpdate> batch = drain();
+            if (batch.isEmpty()) {
+                return Collections.emptySet();
+            }
+            boolean joined = TransactionSynchronizationManager.isActualTransactionActive()
+                    && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+            try {
+                if (joined) {
+                    //영속성 컨텍스트에만 있는 insert/수정을 먼저 내보내야 JDBC update 가 본다
+                    if (em.isJoinedToTransaction()) {
+                        em.flush();
+                    }
+                    writeBatch(batch);
+                    TransactionSynchronizationManager.registerSynchronization(new AfterCompletion(batch));
+                } else {
+                    transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+                    complete(batch);
+                }
+            } catch (RuntimeException e) {
+                fail(batch, e);
+                throw e;
+            }
+            Set<Long> flushed = new LinkedHashSet<>();
+            for (PendingUpdate update : batch) {
+                flushed.add(update.memberId);
+            }
+            return flushed;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 조회 전에 호출하는 {@link #flush()}
+     * 반영에 실패하면 로그만 남기고 빈 집합을 돌려준다. (BUFFERED 는 다음 flush 에 다시 시도)
+     * 읽기 전용 트랜잭션 안이면 반영하지 않고 빈 집합을 돌려준다.
+     */
+    public Set<Long> flushForRead() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Collections.emptySet();
+        }
+        try {
+            return flush();
+        } catch (RuntimeException e) {
+            log.warn("write-behind flush before read failed, {} members pending", pending.size(), e);
+            return Collections.emptySet();
+        }
+    }
+
+    private void writeBatch(List<PendingUpdate> batch) {
+        jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, update) -> {
+            ps.setInt(1, update.ageDelta);
+            ps.setString(2, update.username);
+            ps.setLong(3, update.memberId);
+        });
+        dataVersion.changed();
+    }
+
+    private void complete(List<PendingUpdate> batch) {
+        for (PendingUpdate update : batch) {
+            update.complete();
+        }
+    }
+
+    private void fail(List<PendingUpdate> batch, RuntimeException e) {
+        for (PendingUpdate update : batch) {
+            update.fail(e);
+        }
+        if (durability == Durability.BUFFERED) {
+            requeue(batch);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("write-behind flush failed, {} members pending", pending.size(), e);
+        }
+    }
+
+    private List<PendingUpdate> drain() {
+        List<PendingUpdate> batch = new ArrayList<>(pending.size());
+        for (Long memberId : pending.keySet()) {
+            PendingUpdate update = pending.remove(memberId);
+            if (update != null) {
+                batch.add(update);
+            }
+        }
+        batch.sort(ordering == Ordering.ID
+                ? Comparator.comparingLong(u -> u.memberId)
+                : Comparator.comparingLong(u -> u.sequence));
+        return batch;
+    }
+
+    private void requeue(List<PendingUpdate> batch) {
+        for (PendingUpdate failed : batch) {
+            pending.merge(failed.memberId, failed, (newer, older) -> {
+                older.merge(newer.ageDelta, newer.username, null);
+                return older;
+            });
+        }
+    }
+
+    /**
+     * 호출한 쪽 트랜잭션에 합류해서 반영한 경우, 커밋되면 완료하고 롤백되면 다시 버퍼에 넣는다.
+     */
+    private class AfterCompletion implements TransactionSynchronization {
+        private final List<PendingUpdate> batch;
+
+        AfterCompletion(List<PendingUpdate> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                complete(batch);
+            } else {
+                fail(batch, new IllegalStateException("transaction rolled back before write-behind updates committed"));
+            }
+        }
+    }
+
+    private static class PendingUpdate {
+        private final long memberId;
+        private final long sequence;
+        private int ageDelta;
+        private String username;
+        private List<CompletableFuture<Void>> waiters;
+
+        PendingUpdate(long memberId, long sequence) {
+            this.memberId = memberId;
+            this.sequence = sequence;
+        }
+
+        void merge(int ageDelta, String username, CompletableFuture<Void> waiter) {
+            this.ageDelta += ageDelta;
+            if (username != null) {
+                this.username = username;
+            }
+            if (waiter != null) {
+                if (waiters == null) {
+                    waiters = new ArrayList<>();
+                }
+                waiters.add(waiter);
+            }
+        }
+
+        void complete() {
+            if (waiters != null) {
+                waiters.forEach(w -> w.complete(null));
+            }
+        }
+
+        void fail(Throwable e) {
+            if (waiters != null) {
+                waiters.forEach(w -> w.completeExceptionally(e));
+                waiters = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.repository;
+
+/**
+ * 검색 쿼리 실행 경로
+ * JPA: JPQL + Hibernate 결과 처리
+ * SQL: querydsl-sql 로 같은 트랜잭션/커넥션에서 ResultSet 을 바로 DTO 로 매핑
+ */
+public enum SearchEngine {
+    JPA, SQL
+}
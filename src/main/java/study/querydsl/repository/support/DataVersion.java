@@ -0,0 +1,157 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * member, team 테이블 데이터 버전
+ * 변경이 커밋될 때마다 증가한다. 검색 응답의 ETag 로 쓴다.
+ * <p>
+ * 엔티티 변경은 {@link DataVersionListener} 가, JDBC batch/bulk 쿼리처럼 엔티티 이벤트가 없는 경로는 직접 {@link #changed()} 를 호출한다.
+ * 버전은 메모리(AtomicLong)에 두고 커밋 후에 올린다. 304 응답은 DB 를 거치지 않는다.
+ * <p>
+ * 여러 노드가 같은 DB 를 쓰므로 member.data-version.poll-ms 마다 백그라운드에서 data_version 행을 맞춘다.
+ * 그 사이 이 노드에 커밋이 있었으면 행을 1 올리고, 다른 노드가 올린 것이 보이면 이 노드 버전도 올린다.
+ * (다른 노드의 변경은 최대 poll-ms 늦게 반영된다. 쓰기 트랜잭션은 공유 행을 잠그지 않는다)
+ * 버전은 현재 시각(ms)부터 세므로 재시작해도 이전 ETag 와 겹치지 않는다.
+ */
+@Slf4j
+@Component
+public class DataVersion implements SmartInitializingSingleton {
+
+    private static final int ROW_ID = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long pollMillis;
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    //마지막 poll 이후 이 노드에 커밋된 변경이 있음
+    private final AtomicBoolean unpublished = new AtomicBoolean();
+    private long sharedSeen;
+    private ScheduledExecutorService poller;
+
+    public DataVersion(JdbcTemplate jdbcTemplate,
+                       @Value("${member.data-version.poll-ms:1000}") long pollMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * 스키마는 EntityManagerFactory 가 만들고, 리스너 때문에 이 빈이 그보다 먼저 생성되므로 행은 싱글톤 초기화가 끝난 뒤에 읽는다.
+     * poll-ms 가 0 이면 백그라운드로 맞추지 않는다. (단일 노드)
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        synchronized (this) {
+            sharedSeen = readShared();
+        }
+        if (pollMillis <= 0) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "data-version-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.shutdown();
+        }
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * 스프링 트랜잭션 안이면 커밋 후에 (트랜잭션당 한 번), 밖이면 바로 증가시킨다.
+     */
+    public void changed() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment();
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof IncrementOnCommit) {
+                return;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new IncrementOnCommit());
+    }
+
+    /**
+     * 이 노드의 변경을 data_version 행에 올리고, 다른 노드가 올린 것이 있으면 이 노드 버전도 올린다.
+     */
+    synchronized void poll() {
+        boolean publish = unpublished.getAndSet(false);
+        try {
+            if (publish && jdbcTemplate.update("update data_version set version_no = version_no + 1 where id = ?", ROW_ID) == 0) {
+                createRow();
+            }
+        } catch (DataAccessException e) {
+            unpublished.set(true);
+            throw e;
+        }
+        long shared = readShared();
+        //자기가 올린 1 을 빼고도 바뀌었으면 다른 노드의 변경이다
+        if (shared != sharedSeen + (publish ? 1 : 0)) {
+            version.incrementAndGet();
+        }
+        sharedSeen = shared;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.warn("data version poll failed, will retry", e);
+        }
+    }
+
+    private void increment() {
+        version.incrementAndGet();
+        unpublished.set(true);
+    }
+
+    private long readShared() {
+        List<Long> shared = jdbcTemplate.queryForList("select version_no from data_version where id = ?", Long.class, ROW_ID);
+        if (!shared.isEmpty()) {
+            return shared.get(0);
+        }
+        createRow();
+        return jdbcTemplate.queryForObject("select version_no from data_version where id = ?", Long.class, ROW_ID);
+    }
+
+    private void createRow() {
+        try {
+            jdbcTemplate.update("insert into data_version (id, version_no) values (?, ?)", ROW_ID, 0L);
+        } catch (DuplicateKeyException e) {
+            //다른 노드가 먼저 만들었다
+        }
+    }
+
+    private class IncrementOnCommit implements TransactionSynchronization {
+        @Override
+        public void afterCommit() {
+            increment();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.repository.support;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Member, Team 엔티티 변경 시 {@link DataVersion} 증가
+ * (hibernate 가 SpringBeanContainer 로 생성하므로 생성자 주입이 된다)
+ */
+public class DataVersionListener {
+
+    private final DataVersion dataVersion;
+
+    public DataVersionListener(DataVersion dataVersion) {
+        this.dataVersion = dataVersion;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        dataVersion.changed();
+    }
+}
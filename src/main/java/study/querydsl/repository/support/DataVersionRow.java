@@ -0,0 +1,25 @@
+package study.querydsl.repository.support;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 노드가 함께 쓰는 데이터 버전 행 (data_version 테이블 정의용, 읽고 쓰는 것은 {@link DataVersion})
+ * 행은 id = 1 하나뿐이다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(name = "data_version")
+public class DataVersionRow {
+    @Id
+    private Integer id;
+    @Column(name = "version_no")
+    private long versionNo;
+}
@@ -0,0 +1,156 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberWriteBuffer;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * {@link study.querydsl.repository.MemberRepositoryCustom} 페이징 검색 앞단의 single-flight
+ * <p>
+ * 키는 (종류, 검색 조건, pageable, 데이터 버전) 이다.
+ * 데이터 버전이 키에 들어가므로 커밋 이후에 들어온 요청이 커밋 이전에 시작한 조회에 붙지 않는다. (ETag 와 같은 버전)
+ * 조회는 전용 풀(member.search.workers, 보통 커넥션 풀 크기)에서 실행하고, 큐가 가득 차면 RejectedExecutionException
+ * <p>
+ * metrics: member.search.executions, member.search.coalesced, member.search.in-flight
+ */
+@Slf4j
+@Component
+public class MemberSearchCoalescer {
+
+    private final MemberRepository memberRepository;
+    private final MemberSearchStaging searchStaging;
+    private final MemberWriteBuffer writeBuffer;
+    private final DataVersion dataVersion;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final SingleFlight<Key, Page<MemberTeamDto>> singleFlight = new SingleFlight<>();
+    private final ThreadPoolExecutor executor;
+
+    public MemberSearchCoalescer(MemberRepository memberRepository,
+                                 MemberSearchStaging searchStaging,
+                                 MemberWriteBuffer writeBuffer,
+                                 DataVersion dataVersion,
+                                 EntityManager em,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${member.search.workers:10}") int workers,
+                                 @Value("${member.search.queue-capacity:200}") int queueCapacity) {
+        this.memberRepository = memberRepository;
+        this.searchStaging = searchStaging;
+        this.writeBuffer = writeBuffer;
+        this.dataVersion = dataVersion;
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "member-search-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        FunctionCounter.builder("member.search.executions", singleFlight, SingleFlight::getExecutions)
+                .description("paging searches actually executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("member.search.coalesced", singleFlight, SingleFlight::getCoalesced)
+                .description("paging searches that joined an identical in-flight search")
+                .register(meterRegistry);
+        Gauge.builder("member.search.in-flight", singleFlight, SingleFlight::getInFlight)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 공유 실행은 처음 들어온 요청의 마감을 따른다.
+     * 돌려받은 future 를 cancel 하면(클라이언트 연결 끊김 등) 그 요청만 빠지고, 남은 요청이 없으면 실행 중인 statement 를 취소한다.
+     */
+    public CompletableFuture<Page<MemberTeamDto>> searchPageSimple(MemberSearchCondition condition, Pageable pageable,
+                                                                   QueryDeadline deadline) {
+        return singleFlight.execute(new Key(Kind.SIMPLE, condition, pageable, dataVersion.current()),
+                shared -> run(shared, deadline, condition,
+                        predicates -> memberRepository.searchPageSimple(condition, predicates, pageable)),
+                executor);
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+                                                                    QueryDeadline deadline) {
+        return singleFlight.execute(new Key(Kind.COMPLEX, condition, pageable, dataVersion.current()),
+                shared -> run(shared, deadline, condition,
+                        predicates -> memberRepository.searchPageComplex(condition, predicates, pageable)),
+                executor);
+    }
+
+    //statement 를 취소할 세션이 있도록 조회 전체를 읽기 전용 트랜잭션 하나로 묶는다
+    //긴 목록 조건 staging 과 write-behind 반영은 그 전에 한다 (읽기 전용 트랜잭션 안에서는 커넥션을 더 잡지 않으므로 하지 않는다)
+    private Page<MemberTeamDto> run(CompletableFuture<Page<MemberTeamDto>> shared, QueryDeadline deadline,
+                                    MemberSearchCondition condition,
+                                    Function<MemberSearchPredicates, Page<MemberTeamDto>> search) {
+        return deadline.run(() -> {
+            MemberSearchPredicates predicates = searchStaging.predicates(condition);
+            writeBuffer.flushForRead();
+            return transactionTemplate.execute(status -> {
+                Session session = em.unwrap(Session.class);
+                shared.whenComplete((page, e) -> {
+                    if (shared.isCancelled()) {
+                        cancelQuery(session);
+                    }
+                });
+                if (shared.isCancelled()) {
+                    throw new CancellationException();
+                }
+                return search.apply(predicates);
+            });
+        });
+    }
+
+    private static void cancelQuery(Session session) {
+        try {
+            session.cancelQuery();
+        } catch (RuntimeException e) {
+            log.debug("failed to cancel member search", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private enum Kind {SIMPLE, COMPLEX}
+
+    @EqualsAndHashCode
+    private static class Key {
+        private final Kind kind;
+        private final MemberSearchCondition condition;
+        private final Pageable pageable;
+        private final long dataVersion;
+
+        Key(Kind kind, MemberSearchCondition condition, Pageable pageable, long dataVersion) {
+            this.kind = kind;
+            this.condition = condition;
+            this.pageable = pageable;
+            this.dataVersion = dataVersion;
+        }
+    }
+}
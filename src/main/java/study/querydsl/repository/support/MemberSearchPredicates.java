@@ -0,0 +1,200 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.sql.SQLExpressions;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.sql.SMember;
+import study.querydsl.sql.SSearchFilterValue;
+import study.querydsl.sql.STeam;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import static org.apache.logging.log4j.util.Strings.isEmpty;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.support.QSearchFilterValue.searchFilterValue;
+
+/**
+ * 회원 검색 조건(회원명, 팀명, 나이 범위, 회원명 목록, 팀 id 목록) -> where 절
+ * <p>
+ * 만들기 전에 조건을 정리한다.
+ * <ul>
+ *     <li>나이는 0 이상이므로 ageGoe &lt;= 0 은 조건에서 뺀다</li>
+ *     <li>ageGoe == ageLoe 는 age = ?, 둘 다 있으면 between</li>
+ *     <li>ageLoe &lt; 0 이거나 ageGoe &gt; ageLoe 면 맞는 회원이 없다 ({@link #isUnsatisfiable()}) -> 리포지토리는 쿼리 없이 빈 결과</li>
+ *     <li>목록은 중복 제거 후 정렬, 빈 목록은 조건 없음. username 이 목록에 있으면 목록은 빼고, 없으면 맞는 회원이 없다</li>
+ * </ul>
+ * 목록이 {@link #IN_LIST_MAX} 보다 길면 {@link MemberSearchStaging} 이 staging 테이블에 넣어 두고 IN (subquery) 로 참조한다.
+ * staging 없이 만든 경우({@link #of})에는 IN_LIST_MAX 개씩 나눈 IN 을 or 로 묶는다.
+ */
+public final class MemberSearchPredicates {
+
+    //IN 목록 하나의 최대 길이 (Oracle 1000개 제한과 같음)
+    public static final int IN_LIST_MAX = 1000;
+
+    private final boolean unsatisfiable;
+    private final String username;
+    private final String teamName;
+    private final Integer ageGoe;
+    private final Integer ageLoe;
+    private final List<String> usernames;
+    private final List<Long> teamIds;
+    private final Long usernamesFilterId;
+    private final Long teamIdsFilterId;
+
+    private MemberSearchPredicates(boolean unsatisfiable, String username, String teamName,
+                                   Integer ageGoe, Integer ageLoe, List<String> usernames, List<Long> teamIds,
+                                   Long usernamesFilterId, Long teamIdsFilterId) {
+        this.unsatisfiable = unsatisfiable;
+        this.username = username;
+        this.teamName = teamName;
+        this.ageGoe = ageGoe;
+        this.ageLoe = ageLoe;
+        this.usernames = usernames;
+        this.teamIds = teamIds;
+        this.usernamesFilterId = usernamesFilterId;
+        this.teamIdsFilterId = teamIdsFilterId;
+    }
+
+    public static MemberSearchPredicates of(MemberSearchCondition condition) {
+        Integer ageGoe = condition.getAgeGoe();
+        Integer ageLoe = condition.getAgeLoe();
+        if (ageGoe != null && ageGoe <= 0) {
+            ageGoe = null;
+        }
+        String username = isEmpty(condition.getUsername()) ? null : condition.getUsername();
+        List<String> usernames = sortedDistinct(condition.getUsernames());
+        boolean unsatisfiable = (ageLoe != null && ageLoe < 0)
+                || (ageGoe != null && ageLoe != null && ageGoe > ageLoe);
+        if (username != null && usernames != null) {
+            unsatisfiable |= Collections.binarySearch(usernames, username) < 0;
+            usernames = null;
+        }
+        return new MemberSearchPredicates(unsatisfiable, username,
+                isEmpty(condition.getTeamName()) ? null : condition.getTeamName(),
+                ageGoe, ageLoe, usernames, sortedDistinct(condition.getTeamIds()), null, null);
+    }
+
+    //staging 테이블에 넣은 목록을 filter id 로 참조하도록 바꾼 사본
+    MemberSearchPredicates withStaged(Long usernamesFilterId, Long teamIdsFilterId) {
+        return new MemberSearchPredicates(unsatisfiable, username, teamName, ageGoe, ageLoe, usernames, teamIds,
+                usernamesFilterId, teamIdsFilterId);
+    }
+
+    public boolean isUnsatisfiable() {
+        return unsatisfiable;
+    }
+
+    /**
+     * 정렬, 중복 제거된 회원명 목록 (조건이 없으면 null)
+     */
+    public List<String> getUsernames() {
+        return usernames;
+    }
+
+    public List<Long> getTeamIds() {
+        return teamIds;
+    }
+
+    /**
+     * QMember, QTeam 기준 where 절 (null 은 querydsl 이 무시한다)
+     */
+    public BooleanExpression[] jpa() {
+        return where(member.username, team.name, member.age, team.id,
+                filterId -> JPAExpressions.select(searchFilterValue.stringValue)
+                        .from(searchFilterValue)
+                        .where(searchFilterValue.filterId.eq(filterId)),
+                filterId -> JPAExpressions.select(searchFilterValue.longValue)
+                        .from(searchFilterValue)
+                        .where(searchFilterValue.filterId.eq(filterId)));
+    }
+
+    /**
+     * SMember, STeam 기준 where 절
+     */
+    public BooleanExpression[] sql() {
+        SSearchFilterValue value = SSearchFilterValue.searchFilterValue;
+        return where(SMember.member.username, STeam.team.name, SMember.member.age, STeam.team.teamId,
+                filterId -> SQLExpressions.select(value.stringValue).from(value).where(value.filterId.eq(filterId)),
+                filterId -> SQLExpressions.select(value.longValue).from(value).where(value.filterId.eq(filterId)));
+    }
+
+    /**
+     * 메모리에 있는 회원(보관소 등)에 같은 조건 적용
+     */
+    public boolean matches(MemberTeamDto dto) {
+        return !unsatisfiable
+                && (username == null || username.equals(dto.getUsername()))
+                && (teamName == null || teamName.equals(dto.getTeamName()))
+                && (ageGoe == null || dto.getAge() >= ageGoe)
+                && (ageLoe == null || dto.getAge() <= ageLoe)
+                && (usernames == null || dto.getUsername() != null && Collections.binarySearch(usernames, dto.getUsername()) >= 0)
+                && (teamIds == null || dto.getTeamId() != null && Collections.binarySearch(teamIds, dto.getTeamId()) >= 0);
+    }
+
+    private BooleanExpression[] where(StringPath usernamePath, StringPath teamNamePath, NumberPath<Integer> agePath,
+                                      NumberPath<Long> teamIdPath,
+                                      Function<Long, SubQueryExpression<String>> stagedUsernames,
+                                      Function<Long, SubQueryExpression<Long>> stagedTeamIds) {
+        if (unsatisfiable) {
+            throw new IllegalStateException("unsatisfiable condition must be short-circuited");
+        }
+        return new BooleanExpression[]{
+                username == null ? null : usernamePath.eq(username),
+                in(usernamePath, usernames, usernamesFilterId, stagedUsernames),
+                teamName == null ? null : teamNamePath.eq(teamName),
+                in(teamIdPath, teamIds, teamIdsFilterId, stagedTeamIds),
+                ageRange(agePath)};
+    }
+
+    private static <T> BooleanExpression in(SimpleExpression<T> path, List<T> values, Long filterId,
+                                            Function<Long, SubQueryExpression<T>> staged) {
+        if (values == null) {
+            return null;
+        }
+        if (filterId != null) {
+            return path.in(staged.apply(filterId));
+        }
+        //길이가 다른 목록마다 SQL 이 달라지지 않도록 hibernate.query.in_clause_parameter_padding 으로 2의 거듭제곱에 맞춘다
+        BooleanExpression in = null;
+        for (int i = 0; i < values.size(); i += IN_LIST_MAX) {
+            BooleanExpression chunk = path.in(values.subList(i, Math.min(values.size(), i + IN_LIST_MAX)));
+            in = in == null ? chunk : in.or(chunk);
+        }
+        return in;
+    }
+
+    private BooleanExpression ageRange(NumberPath<Integer> agePath) {
+        if (ageGoe != null && ageLoe != null) {
+            return ageGoe.equals(ageLoe) ? agePath.eq(ageGoe) : agePath.between(ageGoe, ageLoe);
+        }
+        if (ageGoe != null) {
+            return agePath.goe(ageGoe);
+        }
+        return ageLoe == null ? null : agePath.loe(ageLoe);
+    }
+
+    private static <T extends Comparable<? super T>> List<T> sortedDistinct(Collection<T> values) {
+        if (values == null) {
+            return null;
+        }
+        TreeSet<T> sorted = new TreeSet<>();
+        for (T value : values) {
+            if (value != null) {
+                sorted.add(value);
+            }
+        }
+        return sorted.isEmpty() ? null : Collections.unmodifiableList(new ArrayList<>(sorted));
+    }
+}
@@ -0,0 +1,221 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.id.NodeLocalIds;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 긴 다중 값 검색 조건(usernames, teamIds)을 {@link SearchFilterValue} 테이블에 넣고 filter id 로 참조하게 한다.
+ * <p>
+ * 수만 개짜리 IN 목록은 파싱 비용이 크고, 길이마다 다른 SQL 이 되어 statement 캐시도 못 쓴다.
+ * 커넥션마다 따로인 임시 테이블 대신 일반 테이블을 쓰므로 같은 목록으로 들어온 검색은 이미 넣어 둔 값을 같이 쓴다.
+ * (키는 정렬된 값의 SHA-256) 넣는 건 자체 트랜잭션으로 커밋해서 어느 커넥션에서든 보인다.
+ * 트랜잭션 안에서 호출되면 커넥션을 하나 더 잡지 않도록 넣지 않는다. 이미 넣어 둔 목록만 쓰고, 없으면 나눈 IN 으로 검색한다.
+ * <p>
+ * 목록은 넣은 뒤 member.search.staging.ttl-minutes 동안만 새 검색에 내준다. 행은 그 뒤 ttl 만큼 더 두었다가 created_at 으로 지운다.
+ * (그 사이에 이미 받은 검색이 끝난다. 재시작 전이나 다른 노드가 넣은 행도 같은 기준으로 지워진다)
+ * <p>
+ * member.search.staging.enabled=false 면 staging 없이 {@link MemberSearchPredicates#IN_LIST_MAX} 개씩 나눈 IN 을 or 로 묶는다.
+ */
+@Slf4j
+@Component
+public class MemberSearchStaging {
+
+    private static final String INSERT_SQL =
+            "insert into search_filter_value (filter_id, ordinal, string_value, long_value, created_at) values (?, ?, ?, ?, ?)";
+    private static final String DELETE_SQL = "delete from search_filter_value where created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NodeLocalIds ids;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int inListMax;
+    private final long ttlMillis;
+    private final ConcurrentHashMap<String, Staged> staged = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    public MemberSearchStaging(JdbcTemplate jdbcTemplate,
+                               NodeLocalIds ids,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${member.search.staging.enabled:true}") boolean enabled,
+                               @Value("${member.search.in-list-max:1000}") int inListMax,
+                               @Value("${member.search.staging.ttl-minutes:30}") long ttlMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ids = ids;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.inListMax = Math.min(inListMax, MemberSearchPredicates.IN_LIST_MAX);
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-search-staging");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::removeExpiredQuietly, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdown();
+        }
+    }
+
+    /**
+     * {@link MemberSearchPredicates#of} 와 같지만 긴 목록은 staging 테이블을 거친다.
+     */
+    public MemberSearchPredicates predicates(MemberSearchCondition condition) {
+        MemberSearchPredicates predicates = MemberSearchPredicates.of(condition);
+        if (!enabled || predicates.isUnsatisfiable()) {
+            return predicates;
+        }
+        List<String> usernames = predicates.getUsernames();
+        List<Long> teamIds = predicates.getTeamIds();
+        Long usernamesFilterId = usernames != null && usernames.size() > inListMax
+                ? stage("username", usernames, false) : null;
+        Long teamIdsFilterId = teamIds != null && teamIds.size() > inListMax
+                ? stage("team_id", teamIds, true) : null;
+        if (usernamesFilterId == null && teamIdsFilterId == null) {
+            return predicates;
+        }
+        return predicates.withStaged(usernamesFilterId, teamIdsFilterId);
+    }
+
+    public int getStagedCount() {
+        return staged.size();
+    }
+
+    /**
+     * @return filter id, 트랜잭션 안이라서 넣을 수 없으면 null
+     */
+    private Long stage(String column, List<?> values, boolean numeric) {
+        String key = key(column, values);
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        while (true) {
+            long now = System.currentTimeMillis();
+            Staged existing = staged.get(key);
+            if (existing != null && existing.isExpired(now, ttlMillis)) {
+                staged.remove(key, existing);
+                continue;
+            }
+            if (existing == null) {
+                if (inTransaction) {
+                    return null;
+                }
+                Staged created = new Staged(ids.next(), now);
+                if (staged.putIfAbsent(key, created) == null) {
+                    insert(key, created, values, numeric);
+                    return created.filterId;
+                }
+                continue;
+            }
+            if (inTransaction && !existing.ready.isDone()) {
+                return null;
+            }
+            try {
+                existing.ready.join();
+                return existing.filterId;
+            } catch (RuntimeException e) {
+                //넣다가 실패한 목록이면 다시 넣는다
+                staged.remove(key, existing);
+                if (inTransaction) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void insert(String key, Staged created, List<?> values, boolean numeric) {
+        List<Object[]> batch = new ArrayList<>(values.size());
+        int ordinal = 0;
+        for (Object value : values) {
+            batch.add(numeric
+                    ? new Object[]{created.filterId, ordinal++, null, value, created.createdAt}
+                    : new Object[]{created.filterId, ordinal++, value, null, created.createdAt});
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch,
+                    new int[]{Types.BIGINT, Types.INTEGER, Types.VARCHAR, Types.BIGINT, Types.BIGINT}));
+            created.ready.complete(null);
+        } catch (RuntimeException e) {
+            staged.remove(key, created);
+            created.ready.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 내줄 기한(ttl)이 지난 목록을 잊고, 그 뒤 ttl 이 더 지난 행을 지운다.
+     *
+     * @return 지운 행 수
+     */
+    int removeExpired(long now) {
+        staged.values().removeIf(filter -> filter.isExpired(now, ttlMillis));
+        return jdbcTemplate.update(DELETE_SQL, now - 2 * ttlMillis);
+    }
+
+    private void removeExpiredQuietly() {
+        try {
+            removeExpired(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.warn("failed to remove expired search filters", e);
+        }
+    }
+
+    private static String key(String column, List<?> values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(column.getBytes(StandardCharsets.UTF_8));
+            for (Object value : values) {
+                digest.update((byte) 0);
+                digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Staged {
+        final long filterId;
+        final long createdAt;
+        final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+        Staged(long filterId, long createdAt) {
+            this.filterId = filterId;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return now - createdAt >= ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package study.querydsl.repository.support;
+
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 검색 결과 버퍼
+ * 예상 메모리 사용량이 budget 을 넘으면 그때부터 임시 파일로 내려 쓰고, 읽을 때는 memory-map 해서 읽는다.
+ * 한 요청이 차지하는 heap 은 결과 건수와 상관없이 budget 정도로 제한된다.
+ * <p>
+ * 사용 순서: accept(...) -> finish() -> iterator() -> close() (close 에서 임시 파일 삭제)
+ * close 는 다 읽지 않은 iterator 의 파일 채널도 닫는다. (응답 도중 연결이 끊긴 경우, 다른 스레드에서 호출 가능)
+ */
+public class MemberTeamSpillBuffer implements Consumer<MemberTeamDto>, Iterable<MemberTeamDto>, Closeable {
+
+    private static final int MAP_REGION_BYTES = 64 * 1024 * 1024;
+
+    private final long memoryBudgetBytes;
+    private final Path tempDir;
+    private final Consumer<MemberTeamSpillBuffer> onClose;
+
+    private final List<MemberTeamDto> memory = new ArrayList<>();
+    private long memoryBytes;
+    private Path file;
+    private DataOutputStream out;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    private long size;
+    private boolean finished;
+    private boolean closed;
+    private final List<FileIterator> openIterators = new ArrayList<>();
+
+    MemberTeamSpillBuffer(long memoryBudgetBytes, Path tempDir, Consumer<MemberTeamSpillBuffer> onClose) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.tempDir = tempDir;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void accept(MemberTeamDto dto) {
+        if (finished) {
+            throw new IllegalStateException("buffer already finished");
+        }
+        try {
+            if (out == null) {
+                memoryBytes += estimate(dto);
+                memory.add(dto);
+                if (memoryBytes > memoryBudgetBytes) {
+                    spill();
+                }
+            } else {
+                write(dto);
+            }
+            size++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void finish() {
+        finished = true;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    @Override
+    public synchronized Iterator<MemberTeamDto> iterator() {
+        if (!finished) {
+            throw new IllegalStateException("call finish() before reading");
+        }
+        if (closed) {
+            throw new IllegalStateException("buffer already closed");
+        }
+        if (file == null) {
+            return memory.iterator();
+        }
+        FileIterator iterator = new FileIterator();
+        openIterators.add(iterator);
+        return iterator;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        memory.clear();
+        //매핑은 GC 가 풀지만 채널(파일 디스크립터)은 바로 닫는다
+        for (FileIterator iterator : new ArrayList<>(openIterators)) {
+            iterator.closeChannel();
+        }
+        try {
+            if (out != null) {
+                out.close();
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            onClose.accept(this);
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    private void spill() throws IOException {
+        file = Files.createTempFile(tempDir, "member-search-", ".bin");
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        for (MemberTeamDto dto : memory) {
+            write(dto);
+        }
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    //레코드: 길이(int) + memberId, username, age, teamId, teamName
+    private void write(MemberTeamDto dto) throws IOException {
+        record.reset();
+        DataOutputStream payload = new DataOutputStream(record);
+        writeNullableLong(payload, dto.getMemberId());
+        writeNullableString(payload, dto.getUsername());
+        payload.writeInt(dto.getAge());
+        writeNullableLong(payload, dto.getTeamId());
+        writeNullableString(payload, dto.getTeamName());
+        out.writeInt(record.size());
+        record.writeTo(out);
+    }
+
+    private static long estimate(MemberTeamDto dto) {
+        long bytes = 80;
+        bytes += dto.getUsername() == null ? 0 : 40 + dto.getUsername().length();
+        //팀 이름은 대부분 같은 String 을 공유한다
+        return bytes;
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 파일을 MAP_REGION_BYTES 단위로 memory-map 해서 읽는다. 레코드가 구간 끝에 걸리면 그 레코드부터 다시 map 한다.
+     */
+    private class FileIterator implements Iterator<MemberTeamDto> {
+        private final FileChannel channel;
+        private final long fileSize;
+        private MappedByteBuffer region;
+        private long regionStart;
+        private long position;
+        private volatile boolean channelClosed;
+
+        FileIterator() {
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                fileSize = channel.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = !channelClosed && position < fileSize;
+            if (!hasNext) {
+                closeChannel();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public MemberTeamDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ensureMapped(4);
+            int length = region.getInt((int) (position - regionStart));
+            ensureMapped(4 + length);
+            region.position((int) (position - regionStart) + 4);
+            Long memberId = readNullableLong();
+            String username = readNullableString();
+            int age = region.getInt();
+            Long teamId = readNullableLong();
+            String teamName = readNullableString();
+            position += 4 + length;
+            return new MemberTeamDto(memberId, username, age, teamId, teamName);
+        }
+
+        private void ensureMapped(int bytes) {
+            if (region != null && position + bytes <= regionStart + region.limit()) {
+                return;
+            }
+            try {
+                regionStart = position;
+                long length = Math.max(bytes, Math.min(MAP_REGION_BYTES, fileSize - position));
+                region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Long readNullableLong() {
+            return region.get() == 0 ? null : region.getLong();
+        }
+
+        private String readNullableString() {
+            if (region.get() == 0) {
+                return null;
+            }
+            byte[] bytes = new byte[region.getInt()];
+            region.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void closeChannel() {
+            if (channelClosed) {
+                return;
+            }
+            channelClosed = true;
+            synchronized (MemberTeamSpillBuffer.this) {
+                openIterators.remove(this);
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
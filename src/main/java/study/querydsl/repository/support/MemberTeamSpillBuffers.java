@@ -0,0 +1,54 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link MemberTeamSpillBuffer} 생성 및 추적
+ * 어떤 경로로도 닫히지 않은 버퍼는 종료 시 임시 파일을 지운다.
+ */
+@Slf4j
+@Component
+public class MemberTeamSpillBuffers {
+
+    private final long memoryBudgetBytes;
+    private final Path tempDir;
+    private final Set<MemberTeamSpillBuffer> open = ConcurrentHashMap.newKeySet();
+
+    public MemberTeamSpillBuffers(@Value("${member.search.spill.memory-budget-kb:4096}") long memoryBudgetKb,
+                                  @Value("${member.search.spill.dir:${java.io.tmpdir}}") String tempDir)
+            throws IOException {
+        this.memoryBudgetBytes = memoryBudgetKb * 1024;
+        this.tempDir = Files.createDirectories(Paths.get(tempDir));
+    }
+
+    public MemberTeamSpillBuffer create() {
+        MemberTeamSpillBuffer buffer = new MemberTeamSpillBuffer(memoryBudgetBytes, tempDir, open::remove);
+        open.add(buffer);
+        return buffer;
+    }
+
+    public int openCount() {
+        return open.size();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        for (MemberTeamSpillBuffer buffer : open) {
+            try {
+                buffer.close();
+            } catch (RuntimeException e) {
+                log.warn("failed to delete spill file {}", buffer.getFile(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * 전체 회원을 훑는 분석용 쿼리를 id 범위로 나눠서 동시에 실행한다.
+ * <p>
+ * 범위는 min/max 와 무작위 표본의 분위수로 정한다. (snowflake id 는 시간에 따라 몰려 있으므로 균등 분할은 치우친다)
+ * 워커 수보다 범위를 많이(member.scan.partitions-per-worker 배) 만들고 fork/join 으로 나눠서,
+ * 한쪽 범위가 오래 걸리면 다른 워커가 남은 범위를 가져간다. (work stealing)
+ * 범위마다 읽기 전용 트랜잭션 하나, 커넥션 하나를 쓰므로 커밋된 데이터만 보인다.
+ * <p>
+ * 부분 결과는 범위 순서대로 merge 로 합친다. count, sum, min, max 는 그대로 합치면 되지만
+ * avg 는 합칠 수 없으므로 sum 과 count 를 받아서 마지막에 나눈다. 정렬된 결과는 {@link #mergeSorted}, 그룹은 {@link #mergeGroups}
+ */
+@Component
+public class PartitionedScan {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ForkJoinPool pool;
+    private final int partitionsPerWorker;
+    private final int samplesPerPartition;
+    private final long minRowsPerPartition;
+
+    public PartitionedScan(EntityManager em,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${member.scan.parallelism:4}") int parallelism,
+                           @Value("${member.scan.partitions-per-worker:4}") int partitionsPerWorker,
+                           @Value("${member.scan.samples-per-partition:16}") int samplesPerPartition,
+                           @Value("${member.scan.min-rows-per-partition:10000}") long minRowsPerPartition) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("member-scan-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        this.partitionsPerWorker = partitionsPerWorker;
+        this.samplesPerPartition = samplesPerPartition;
+        this.minRowsPerPartition = minRowsPerPartition;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @param query 범위 조건을 where 에 넣어서 실행하는 쿼리 (테이블이 비어 있으면 조건 null 로 한 번 실행)
+     * @param merge 앞 범위, 뒤 범위 순서로 부분 결과를 합친다
+     */
+    public <R> R scan(EntityPath<?> from, NumberPath<Long> id,
+                      Function<BooleanExpression, R> query, BinaryOperator<R> merge) {
+        List<IdRange> ranges = partition(from, id);
+        QueryDeadline deadline = QueryDeadline.current().orElse(null);
+        Function<IdRange, R> leaf = range -> {
+            BooleanExpression predicate = range == null ? null : range.predicate(id);
+            return deadline == null
+                    ? readOnlyTransaction.execute(status -> query.apply(predicate))
+                    : deadline.run(() -> readOnlyTransaction.execute(status -> query.apply(predicate)));
+        };
+        if (ranges.isEmpty()) {
+            return leaf.apply(null);
+        }
+        return pool.invoke(new ScanTask<>(ranges, leaf, merge));
+    }
+
+    /**
+     * 범위마다 같은 정렬로 가져온 결과를 합친다. (limit 개까지)
+     */
+    public <T> List<T> scanSorted(EntityPath<?> from, NumberPath<Long> id,
+                                  Function<BooleanExpression, List<T>> query, Comparator<? super T> order, int limit) {
+        return scan(from, id, query, (left, right) -> mergeSorted(left, right, order, limit));
+    }
+
+    List<IdRange> partition(EntityPath<?> from, NumberPath<Long> id) {
+        Tuple stats = queryFactory
+                .select(id.min(), id.max(), id.count())
+                .from(from)
+                .fetchOne();
+        Long min = stats == null ? null : stats.get(id.min());
+        Long max = stats == null ? null : stats.get(id.max());
+        long rows = stats == null || stats.get(id.count()) == null ? 0 : stats.get(id.count());
+        if (min == null || max == null) {
+            return new ArrayList<>();
+        }
+        int partitions = (int) Math.max(1, Math.min((long) pool.getParallelism() * partitionsPerWorker,
+                rows / Math.max(1, minRowsPerPartition)));
+        if (partitions == 1) {
+            return boundaries(min, max, new ArrayList<>(), 1);
+        }
+        double fraction = Math.min(1.0, (double) partitions * samplesPerPartition / rows);
+        List<Long> samples = queryFactory
+                .select(id)
+                .from(from)
+                .where(Expressions.numberTemplate(Double.class, "function('rand')").lt(fraction))
+                .orderBy(id.asc())
+                .fetch();
+        return boundaries(min, max, samples, partitions);
+    }
+
+    /**
+     * 정렬된 표본의 분위수로 [min, max] 를 나눈다. 표본이 모자라면 같은 폭으로 나눈다.
+     */
+    static List<IdRange> boundaries(long min, long max, List<Long> sortedSamples, int partitions) {
+        List<Long> cuts = new ArrayList<>();
+        if (sortedSamples.size() >= partitions) {
+            for (int k = 1; k < partitions; k++) {
+                cuts.add(sortedSamples.get((int) ((long) k * sortedSamples.size() / partitions)));
+            }
+        } else {
+            long width = (max - min) / partitions;
+            for (int k = 1; k < partitions && width > 0; k++) {
+                cuts.add(min + k * width);
+            }
+        }
+        List<IdRange> ranges = new ArrayList<>();
+        long from = min;
+        for (long cut : cuts) {
+            if (cut > from && cut <= max) {
+                ranges.add(new IdRange(from, cut));
+                from = cut;
+            }
+        }
+        ranges.add(new IdRange(from, max + 1));
+        return ranges;
+    }
+
+    /**
+     * 두 정렬된 목록을 하나로 합친다. (limit 개까지)
+     */
+    public static <T> List<T> mergeSorted(List<T> left, List<T> right, Comparator<? super T> order, int limit) {
+        int size = Math.min(limit, left.size() + right.size());
+        List<T> merged = new ArrayList<>(size);
+        int i = 0;
+        int j = 0;
+        while (merged.size() < size) {
+            if (j >= right.size() || (i < left.size() && order.compare(left.get(i), right.get(j)) <= 0)) {
+                merged.add(left.get(i++));
+            } else {
+                merged.add(right.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * group by 부분 결과를 키별로 합친다.
+     */
+    public static <K, V> Map<K, V> mergeGroups(Map<K, V> left, Map<K, V> right, BinaryOperator<V> merge) {
+        Map<K, V> merged = new HashMap<>(left);
+        right.forEach((key, value) -> merged.merge(key, value, merge));
+        return merged;
+    }
+
+    /**
+     * [from, to) 범위
+     */
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    public static class IdRange {
+        private final long from;
+        private final long to;
+
+        IdRange(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public BooleanExpression predicate(NumberPath<Long> id) {
+            return id.goe(from).and(id.lt(to));
+        }
+    }
+
+    private static class ScanTask<R> extends RecursiveTask<R> {
+        private final List<IdRange> ranges;
+        private final Function<IdRange, R> leaf;
+        private final BinaryOperator<R> merge;
+
+        ScanTask(List<IdRange> ranges, Function<IdRange, R> leaf, BinaryOperator<R> merge) {
+            this.ranges = ranges;
+            this.leaf = leaf;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (ranges.size() == 1) {
+                return leaf.apply(ranges.get(0));
+            }
+            int mid = ranges.size() / 2;
+            ScanTask<R> left = new ScanTask<>(ranges.subList(0, mid), leaf, merge);
+            ScanTask<R> right = new ScanTask<>(ranges.subList(mid, ranges.size()), leaf, merge);
+            left.fork();
+            R rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+}
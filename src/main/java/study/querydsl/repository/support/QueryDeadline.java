@@ -0,0 +1,75 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.AbstractJPAQuery;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 요청 마감 시각
+ * {@link #run(Supplier)} 안에서 실행되는 리포지토리 조회는 남은 시간을 JDBC query timeout 으로 건다. (org.hibernate.timeout)
+ * <p>
+ * JDBC timeout 은 초 단위라서 올림해서 건다. 그보다 정확한 마감은 호출하는 쪽(비동기 요청 timeout -> 취소)이 맡는다.
+ */
+public class QueryDeadline {
+
+    public static final String TIMEOUT_HINT = "org.hibernate.timeout";
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static QueryDeadline after(Duration budget) {
+        return new QueryDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public static Optional<QueryDeadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * 현재 스레드에 마감을 걸고 실행한다.
+     */
+    public <T> T run(Supplier<T> action) {
+        QueryDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * 남은 시간 중 share 비율을 이 쿼리의 timeout 으로 건다. (예: content 0.7, 이어지는 count 는 나머지 전부)
+     *
+     * @throws QueryTimeoutException 이미 마감이 지난 경우 (쿼리를 보내지 않는다)
+     */
+    public static <Q extends AbstractJPAQuery<?, Q>> Q apply(Q query, double share) {
+        QueryDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return query;
+        }
+        long remaining = deadline.remainingMillis();
+        if (remaining <= 0) {
+            throw new QueryTimeoutException("request deadline exceeded before query");
+        }
+        long budget = Math.max(1, (long) (remaining * share));
+        return query.setHint(TIMEOUT_HINT, (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(budget + 999)));
+    }
+}
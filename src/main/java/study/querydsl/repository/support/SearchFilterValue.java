@@ -0,0 +1,53 @@
+package study.querydsl.repository.support;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * 큰 다중 값 검색 조건(usernames, teamIds)을 담아 두는 staging 테이블
+ * 검색 쿼리는 IN (값 목록) 대신 IN (select ... where filter_id = ?) 로 참조한다. ({@link MemberSearchStaging})
+ * 키는 (filter_id, 목록 안의 순번), created_at 은 목록을 넣은 시각(epoch ms)이다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+@IdClass(SearchFilterValue.Key.class)
+@Table(indexes = {
+        @Index(name = "idx_search_filter_string", columnList = "filter_id, string_value"),
+        @Index(name = "idx_search_filter_long", columnList = "filter_id, long_value"),
+        @Index(name = "idx_search_filter_created", columnList = "created_at")})
+public class SearchFilterValue {
+    @Id
+    @Column(name = "filter_id")
+    private Long filterId;
+    @Id
+    @Column(name = "ordinal")
+    private Integer ordinal;
+    @Column(name = "string_value")
+    private String stringValue;
+    @Column(name = "long_value")
+    private Long longValue;
+    @Column(name = "created_at")
+    private long createdAt;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long filterId;
+        private Integer ordinal;
+    }
+}
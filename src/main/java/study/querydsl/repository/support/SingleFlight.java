@@ -0,0 +1,104 @@
+package study.querydsl.repository.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 요청은 실행 중인 하나의 결과를 같이 받는다.
+ * 대기하는 쪽은 future 만 받아 가므로 스레드를 잡고 있지 않는다. 실행이 끝나면 키를 지운다. (결과 캐시 아님)
+ * <p>
+ * 요청마다 따로 future 를 돌려준다. 그 future 를 cancel 하면 그 요청만 빠지고,
+ * 기다리는 요청이 하나도 남지 않으면 공유 실행의 future 도 cancel 된다. (loader 가 받은 future 로 알 수 있다)
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CompletableFuture<V> execute(K key, Supplier<V> loader, Executor executor) {
+        return execute(key, shared -> loader.get(), executor);
+    }
+
+    /**
+     * @param loader 공유 실행 future 를 받아서 결과를 만든다. (취소되면 진행 중인 작업을 멈추는 데 사용)
+     * @throws java.util.concurrent.RejectedExecutionException executor 가 거절한 경우
+     */
+    public CompletableFuture<V> execute(K key, Function<CompletableFuture<V>, V> loader, Executor executor) {
+        while (true) {
+            Flight<V> created = new Flight<>();
+            Flight<V> existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                executions.incrementAndGet();
+                start(key, created, loader, executor);
+                return waiter(key, created);
+            }
+            //모든 요청이 빠져서 취소된 실행에는 붙지 않는다
+            if (existing.waiters.updateAndGet(n -> n == 0 ? 0 : n + 1) > 0) {
+                coalesced.incrementAndGet();
+                return waiter(key, existing);
+            }
+            inFlight.remove(key, existing);
+        }
+    }
+
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    private void start(K key, Flight<V> flight, Function<CompletableFuture<V>, V> loader, Executor executor) {
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!flight.shared.isDone()) {
+                        flight.shared.complete(loader.apply(flight.shared));
+                    }
+                } catch (Throwable e) {
+                    flight.shared.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, flight);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.shared.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<V> waiter(K key, Flight<V> flight) {
+        CompletableFuture<V> waiter = new CompletableFuture<>();
+        flight.shared.whenComplete((value, e) -> {
+            if (e == null) {
+                waiter.complete(value);
+            } else {
+                waiter.completeExceptionally(e);
+            }
+        });
+        waiter.whenComplete((value, e) -> {
+            if (waiter.isCancelled() && flight.waiters.decrementAndGet() == 0) {
+                inFlight.remove(key, flight);
+                flight.shared.cancel(false);
+            }
+        });
+        return waiter;
+    }
+
+    private static class Flight<V> {
+        final CompletableFuture<V> shared = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger(1);
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.sql;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.sql.Types;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+/**
+ * SSearchFilterValue is a Querydsl query type for SEARCH_FILTER_VALUE
+ */
+public class SSearchFilterValue extends RelationalPathBase<SSearchFilterValue> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final SSearchFilterValue searchFilterValue = new SSearchFilterValue("SEARCH_FILTER_VALUE");
+
+    public final NumberPath<Long> createdAt = createNumber("createdAt", Long.class);
+
+    public final NumberPath<Long> filterId = createNumber("filterId", Long.class);
+
+    public final NumberPath<Long> longValue = createNumber("longValue", Long.class);
+
+    public final NumberPath<Integer> ordinal = createNumber("ordinal", Integer.class);
+
+    public final StringPath stringValue = createString("stringValue");
+
+    public final PrimaryKey<SSearchFilterValue> primary = createPrimaryKey(filterId, ordinal);
+
+    public SSearchFilterValue(String variable) {
+        super(SSearchFilterValue.class, forVariable(variable), "PUBLIC", "SEARCH_FILTER_VALUE");
+        addMetadata();
+    }
+
+    public SSearchFilterValue(String variable, String schema, String table) {
+        super(SSearchFilterValue.class, forVariable(variable), schema, table);
+        addMetadata();
+    }
+
+    public SSearchFilterValue(Path<? extends SSearchFilterValue> path) {
+        super(path.getType(), path.getMetadata(), "PUBLIC", "SEARCH_FILTER_VALUE");
+        addMetadata();
+    }
+
+    public SSearchFilterValue(PathMetadata metadata) {
+        super(SSearchFilterValue.class, metadata, "PUBLIC", "SEARCH_FILTER_VALUE");
+        addMetadata();
+    }
+
+    public void addMetadata() {
+        addMetadata(createdAt, ColumnMetadata.named("CREATED_AT").withIndex(5).ofType(Types.BIGINT).withSize(19).notNull());
+        addMetadata(filterId, ColumnMetadata.named("FILTER_ID").withIndex(1).ofType(Types.BIGINT).withSize(19).notNull());
+        addMetadata(longValue, ColumnMetadata.named("LONG_VALUE").withIndex(3).ofType(Types.BIGINT).withSize(19));
+        addMetadata(ordinal, ColumnMetadata.named("ORDINAL").withIndex(2).ofType(Types.INTEGER).withSize(10).notNull());
+        addMetadata(stringValue, ColumnMetadata.named("STRING_VALUE").withIndex(4).ofType(Types.VARCHAR).withSize(255));
+    }
+
+}
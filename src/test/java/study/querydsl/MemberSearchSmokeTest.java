@@ -0,0 +1,148 @@
+package study.querydsl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 빌드한 실행 파일(native 또는 boot jar)을 띄워서 검색 API 를 확인한다.
+ * smoke.command.0, smoke.command.1, ... (실행 파일과 인자를 하나씩) 이 있을 때만 실행 (build.gradle nativeSmokeTest, jvmSmokeTest)
+ * 시작부터 readiness 까지 걸린 시간과 RSS 를 출력해서 두 빌드를 비교한다.
+ * <p>
+ * 외부 DB 없이 돌도록 local 프로필(InitMember 가 teamA, member1... 을 넣는다)과 메모리 H2 로 띄운다.
+ * 다른 DB 를 쓰려면 smoke.datasource-url, 보관소는 임시 디렉터리를 쓰고 끝나면 지운다.
+ */
+@EnabledIfSystemProperty(named = "smoke.command.0", matches = ".+")
+class MemberSearchSmokeTest {
+
+    private static final String DEFAULT_DATASOURCE_URL = "jdbc:h2:mem:smoke;DB_CLOSE_DELAY=-1";
+
+    static Process process;
+    static HttpClient client;
+    static String baseUrl;
+    static Path archiveDir;
+
+    @BeforeAll
+    static void start() throws Exception {
+        int port = Integer.getInteger("smoke.port", 18080);
+        archiveDir = Files.createTempDirectory("member-archive-smoke");
+        List<String> command = new ArrayList<>();
+        for (int i = 0; System.getProperty("smoke.command." + i) != null; i++) {
+            command.add(System.getProperty("smoke.command." + i));
+        }
+        command.add("--server.port=" + port);
+        command.add("--spring.profiles.active=local");
+        command.add("--spring.datasource.url=" + System.getProperty("smoke.datasource-url", DEFAULT_DATASOURCE_URL));
+        command.add("--member.archive.dir=" + archiveDir);
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+        long start = System.nanoTime();
+        process = new ProcessBuilder(command).inheritIO().start();
+        awaitReady(Duration.ofSeconds(120));
+        long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.printf("smoke %s: ready in %d ms, rss %d kB%n", command.get(0), startupMillis, rssKb(process.pid()));
+    }
+
+    @AfterAll
+    static void stop() throws InterruptedException, IOException {
+        if (process != null) {
+            System.out.printf("smoke: rss after requests %d kB%n", rssKb(process.pid()));
+            process.destroy();
+            process.waitFor(10, TimeUnit.SECONDS);
+        }
+        if (archiveDir != null) {
+            try (Stream<Path> paths = Files.walk(archiveDir)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void searchV1() throws Exception {
+        HttpResponse<String> response = get("/v1/members?ageGoe=10&ageLoe=20");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).startsWith("[").contains("\"username\"");
+    }
+
+    @Test
+    public void searchV2() throws Exception {
+        HttpResponse<String> response = get("/v2/members?teamName=teamA&page=0&size=5");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("\"content\"", "\"teamName\":\"teamA\"");
+    }
+
+    @Test
+    public void searchV3NotModified() throws Exception {
+        HttpResponse<String> response = get("/v3/members?usernames=member1,member2&page=0&size=5");
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("member1", "member2");
+
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> notModified = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/v3/members?usernames=member1,member2&page=0&size=5"))
+                .header("If-None-Match", etag)
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(notModified.statusCode()).isEqualTo(304);
+    }
+
+    private static HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void awaitReady(Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("application exited with " + process.exitValue());
+            }
+            try {
+                if (get("/actuator/health/readiness").statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                //아직 포트가 열리지 않았다
+            }
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("application not ready within " + timeout);
+    }
+
+    //리눅스에서만 (/proc), 그 외에는 -1
+    private static long rssKb(long pid) {
+        Path status = Paths.get("/proc", Long.toString(pid), "status");
+        try {
+            return Files.readAllLines(status).stream()
+                    .filter(line -> line.startsWith("VmRSS:"))
+                    .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                    .findFirst()
+                    .orElse(-1);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -15,8 +15,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.Commit;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.DtoProjection;
 import study.querydsl.dto.MemberDto;
 import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.QUserDto;
 import study.querydsl.dto.UserDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
@@ -31,6 +33,7 @@ import java.util.List;
 
 import static com.querydsl.jpa.JPAExpressions.select;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
@@ -435,6 +438,37 @@ public class QuerydslBasicTest {
 		}
 	}
 
+	@Test
+	public void findDtoBySetterWithoutReflection() {
+		List<MemberDto> result = queryFactory
+				.select(DtoProjection.of(MemberDto::new,
+						DtoProjection.bind(member.username, MemberDto::setUsername),
+						DtoProjection.bind(member.age, MemberDto::setAge)))
+				.from(member)
+				.orderBy(member.username.asc())
+				.fetch();
+
+		assertThat(result).extracting("username", "age")
+				.containsExactly(tuple("member1", 10), tuple("member2", 20),
+						tuple("member3", 30), tuple("member4", 40));
+	}
+
+	@Test
+	public void findUserDtoWithoutReflection() {
+		QMember memberSub = new QMember("memberSub");
+		List<UserDto> result = queryFactory
+				.select(DtoProjection.of(UserDto::new,
+						DtoProjection.bind(member.username, UserDto::setName),
+						DtoProjection.bind(JPAExpressions
+								.select(memberSub.age.max())
+								.from(memberSub), UserDto::setAge)))
+				.from(member)
+				.fetch();
+
+		assertThat(result).hasSize(4);
+		assertThat(result).extracting("age").containsOnly(40);
+	}
+
 	@Test
 	public void findDtoByQueryProjection() {
 		List<MemberDto> result = queryFactory
@@ -447,6 +481,18 @@ public class QuerydslBasicTest {
 		}
 	}
 
+	@Test
+	public void findUserDtoByQueryProjection() {
+		List<UserDto> result = queryFactory
+				.select(new QUserDto(member.username, member.age))
+				.from(member)
+				.fetch();
+
+		for (UserDto userDto : result) {
+			System.out.println("userDto = " + userDto);
+		}
+	}
+
 	@Test
 	public void dynamicQuery_BooleanBuilder() {
 		String usernameParam = "member1";
@@ -0,0 +1,47 @@
+package study.querydsl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * member.web.smile.enabled 토글이 MVC 컨버터 목록에 실제로 반영되는지 확인
+ */
+class SmileConverterTest {
+
+    @SpringBootTest
+    static class EnabledTest {
+        @Autowired
+        RequestMappingHandlerAdapter handlerAdapter;
+        @Autowired
+        MappingJackson2SmileHttpMessageConverter smileConverter;
+
+        @Test
+        void registersOneSmileConverter() {
+            //기본 Smile 컨버터 자리를 Boot Jackson 설정을 쓰는 빈이 대신한다
+            assertThat(handlerAdapter.getMessageConverters())
+                    .filteredOn(c -> c instanceof MappingJackson2SmileHttpMessageConverter)
+                    .containsExactly(smileConverter);
+            assertThat(handlerAdapter.getMessageConverters())
+                    .anyMatch(c -> c instanceof MappingJackson2HttpMessageConverter);
+        }
+    }
+
+    @SpringBootTest(properties = "member.web.smile.enabled=false")
+    static class DisabledTest {
+        @Autowired
+        RequestMappingHandlerAdapter handlerAdapter;
+
+        @Test
+        void removesSmileConverter() {
+            assertThat(handlerAdapter.getMessageConverters())
+                    .noneMatch(c -> c instanceof MappingJackson2SmileHttpMessageConverter)
+                    .anyMatch(c -> c instanceof MappingJackson2HttpMessageConverter);
+        }
+    }
+}
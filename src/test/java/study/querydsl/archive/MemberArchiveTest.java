@@ -0,0 +1,114 @@
+package study.querydsl.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void appendAndFindById() throws Exception {
+        MemberArchive archive = new MemberArchive(dir.toString(), 1);
+        archive.open();
+        List<MemberTeamDto> members = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            members.add(new MemberTeamDto(id, "member" + id, (int) (id % 50), id % 2 == 0 ? 1L : null,
+                    id % 2 == 0 ? "teamA" : null));
+        }
+        archive.append(members);
+
+        assertThat(archive.findById(500)).hasValueSatisfying(m -> {
+            assertThat(m.getUsername()).isEqualTo("member500");
+            assertThat(m.getTeamName()).isEqualTo("teamA");
+        });
+        assertThat(archive.findById(501)).hasValueSatisfying(m -> assertThat(m.getTeamId()).isNull());
+        assertThat(archive.findById(1001)).isEmpty();
+        //같은 내용으로 이미 보관된 id 는 건너뛴다
+        assertThat(archive.append(members.subList(0, 10))).isZero();
+        archive.close();
+
+        //다시 열면 블록 헤더로 인덱스를 복구
+        MemberArchive reopened = new MemberArchive(dir.toString(), 1);
+        reopened.open();
+        assertThat(reopened.getMaxArchivedId()).isEqualTo(1000);
+        assertThat(reopened.findById(1)).isPresent();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(49);
+        assertThat(reopened.search(condition)).extracting("age").containsOnly(49);
+        reopened.close();
+    }
+
+    @Test
+    public void appendOutOfOrderIds() throws Exception {
+        MemberArchive archive = new MemberArchive(dir.toString(), 1);
+        archive.open();
+        archive.append(members(1000, 2000));
+        //최대 id 보다 작은 id (롤백된 삭제, 다른 노드의 id) 도 추가되고, 같은 내용으로 이미 있는 id 는 건너뛴다
+        List<MemberTeamDto> mixed = new ArrayList<>(members(0, 500));
+        mixed.addAll(members(1500, 1600));
+        mixed.addAll(members(2500, 2600));
+        assertThat(archive.append(mixed)).isEqualTo(600);
+        archive.close();
+
+        MemberArchive reopened = new MemberArchive(dir.toString(), 1);
+        reopened.open();
+        for (long id : new long[]{1, 250, 499, 1000, 1550, 1999, 2500, 2599}) {
+            assertThat(reopened.findById(id)).as("id %d", id)
+                    .hasValueSatisfying(m -> assertThat(m.getMemberId()).isEqualTo(id));
+        }
+        assertThat(reopened.findById(500)).isEmpty();
+        assertThat(reopened.findById(2000)).isEmpty();
+        assertThat(reopened.search(new MemberSearchCondition())).hasSize(1600);
+        reopened.close();
+    }
+
+    @Test
+    public void newerVersionReplacesArchivedCopy() throws Exception {
+        MemberArchive archive = new MemberArchive(dir.toString(), 1);
+        archive.open();
+        archive.append(members(0, 200));
+        //삭제가 롤백된 뒤 수정된 회원을 다시 보관
+        MemberTeamDto updated = new MemberTeamDto(100L, "renamed", 99, 7L, "teamB");
+        assertThat(archive.append(List.of(updated, members(101, 102).get(0)))).isEqualTo(1);
+
+        assertThat(archive.findById(100)).hasValue(updated);
+        archive.close();
+
+        MemberArchive reopened = new MemberArchive(dir.toString(), 1);
+        reopened.open();
+        assertThat(reopened.findById(100)).hasValue(updated);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member100");
+        assertThat(reopened.search(condition)).isEmpty();
+        assertThat(reopened.search(new MemberSearchCondition())).hasSize(200);
+        reopened.close();
+    }
+
+    @Test
+    public void requiresDirectory() {
+        assertThatThrownBy(() -> new MemberArchive("", 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("member.archive.dir");
+    }
+
+    //[from, to)
+    private static List<MemberTeamDto> members(long from, long to) {
+        List<MemberTeamDto> members = new ArrayList<>();
+        for (long id = from; id < to; id++) {
+            members.add(new MemberTeamDto(id, "member" + id, (int) (id % 50), null, null));
+        }
+        return members;
+    }
+}
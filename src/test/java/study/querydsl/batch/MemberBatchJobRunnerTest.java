@@ -0,0 +1,138 @@
+package study.querydsl.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 실행기가 청크마다 직접 커밋하므로 테스트 트랜잭션(@Transactional) 없이 데이터를 커밋하고 직접 지운다.
+ */
+@SpringBootTest
+class MemberBatchJobRunnerTest {
+
+    private static final String PREFIX = "batch-test-";
+    private static final int MEMBERS = 200;
+
+    @Autowired
+    MemberBatchJobRunner runner;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+
+    List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < MEMBERS; i++) {
+                Member member = new Member(PREFIX + i, 0);
+                em.persist(member);
+                ids.add(member.getId());
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Member m where m.username like :prefix")
+                .setParameter("prefix", PREFIX + "%")
+                .executeUpdate());
+        runner.reset("plan");
+        runner.reset("resume");
+    }
+
+    @Test
+    public void runProcessesEveryMemberAndClearsCheckpoints() {
+        MemberBatchResult result = runner.run(new AgeIncrement("plan", null), 7, 3);
+
+        assertThat(result.getUpdated()).isEqualTo(MEMBERS);
+        assertAges(1);
+        assertThat(checkpoints("plan")).isEmpty();
+
+        //체크포인트가 남지 않으므로 다시 실행하면 처음부터 다시 처리한다
+        runner.run(new AgeIncrement("plan", null), 7, 3);
+        assertAges(2);
+    }
+
+    @Test
+    public void failedPartitionResumesWithoutReprocessing() {
+        Long failingId = ids.get(MEMBERS / 2);
+        assertThatThrownBy(() -> runner.run(new AgeIncrement("resume", failingId), 10, 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("resume");
+
+        //실패하면 체크포인트가 남는다. 구간은 이어져 있고 마지막 구간은 상한이 없다
+        List<BatchCheckpoint> checkpoints = checkpoints("resume");
+        assertThat(checkpoints).isNotEmpty().hasSizeLessThanOrEqualTo(4);
+        for (int i = 1; i < checkpoints.size(); i++) {
+            assertThat(checkpoints.get(i).getRangeStart()).isEqualTo(checkpoints.get(i - 1).getRangeEnd() + 1);
+        }
+        assertThat(checkpoints.get(checkpoints.size() - 1).getRangeEnd()).isEqualTo(Long.MAX_VALUE);
+        assertThat(checkpoints).anyMatch(c -> !c.isDone());
+
+        //이어서 실행하면 커밋된 청크는 건너뛰고, 롤백된 청크부터 다시 처리한다
+        AgeIncrement resumed = new AgeIncrement("resume", null);
+        MemberBatchResult result = runner.run(resumed, 10, 1);
+        assertThat(result.getUpdated()).isLessThan(MEMBERS);
+        assertThat(resumed.seen).contains(failingId);
+        assertAges(1);
+        assertThat(checkpoints("resume")).isEmpty();
+    }
+
+    private void assertAges(int age) {
+        List<Integer> ages = em.createQuery("select m.age from Member m where m.username like :prefix", Integer.class)
+                .setParameter("prefix", PREFIX + "%")
+                .getResultList();
+        assertThat(ages).hasSize(MEMBERS).containsOnly(age);
+    }
+
+    private List<BatchCheckpoint> checkpoints(String jobName) {
+        return em.createQuery("select c from BatchCheckpoint c where c.jobName = :jobName order by c.partitionNo",
+                        BatchCheckpoint.class)
+                .setParameter("jobName", jobName)
+                .getResultList();
+    }
+
+    static class AgeIncrement implements MemberBatchJob {
+        private final String name;
+        private final Long failAt;
+        final Set<Long> seen = ConcurrentHashMap.newKeySet();
+
+        AgeIncrement(String name, Long failAt) {
+            this.name = name;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean process(Member member) {
+            if (!member.getUsername().startsWith(PREFIX)) {
+                return false;
+            }
+            if (member.getId().equals(failAt)) {
+                throw new IllegalStateException("fail at " + failAt);
+            }
+            seen.add(member.getId());
+            member.setAge(member.getAge() + 1);
+            return true;
+        }
+    }
+}
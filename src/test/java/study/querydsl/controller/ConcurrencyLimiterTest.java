@@ -0,0 +1,95 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void rejectOverLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 0.2, clock::get);
+
+        ConcurrencyLimiter.Permit first = limiter.tryAcquire().get();
+        limiter.tryAcquire().get();
+
+        assertThat(limiter.tryAcquire()).isEmpty();
+        first.ignore();
+        first.ignore();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isPresent();
+    }
+
+    @Test
+    public void queueUntilSlotIsFreed() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10, 0.2, clock::get);
+        ConcurrencyLimiter.Permit first = limiter.tryAcquire().get();
+
+        assertThat(limiter.tryAcquire(20, TimeUnit.MILLISECONDS)).isEmpty();
+
+        CompletableFuture<Optional<ConcurrencyLimiter.Permit>> queued =
+                CompletableFuture.supplyAsync(() -> limiter.tryAcquire(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertThat(queued).isNotDone();
+        first.ignore();
+
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isPresent();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void fixedLimitIgnoresLatency() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(12, 12, 12, 0, clock::get);
+
+        for (int i = 0; i < 20; i++) {
+            runRound(limiter, 12, i % 2 == 0 ? 10 : 1000);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(12);
+    }
+
+    @Test
+    public void shrinkWhenLatencyGrows() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 2, 200, 0.2, clock::get);
+        //평소 지연 10ms 로 기준을 잡고
+        runRound(limiter, 20, 10);
+        int steady = limiter.getLimit();
+
+        //DB 대기로 지연이 10배가 되면 한도가 줄어든다
+        for (int i = 0; i < 20; i++) {
+            runRound(limiter, limiter.getLimit(), 100);
+        }
+
+        assertThat(limiter.getLimit()).isLessThan(steady);
+        assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void growWhenLatencyIsSteady() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 200, 0.2, clock::get);
+
+        for (int i = 0; i < 20; i++) {
+            runRound(limiter, limiter.getLimit(), 10);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(10);
+    }
+
+    private void runRound(ConcurrencyLimiter limiter, int concurrency, long latencyMillis) {
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            limiter.tryAcquire().ifPresent(permits::add);
+        }
+        clock.addAndGet(latencyMillis * 1_000_000);
+        permits.forEach(ConcurrencyLimiter.Permit::release);
+    }
+}
@@ -0,0 +1,122 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.MemberSearchCoalescer;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 테스트 설정은 member.warmup.enabled=false 이므로 직접 만들어서 실행한다.
+ */
+@SpringBootTest
+class MemberWarmupTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberSearchCoalescer searchCoalescer;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'warmup-test-%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'warmup-test-%'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void everyShapeRunsAgainstSchema() {
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("warmup-test-team");
+            em.persist(team);
+            em.persist(new Member("warmup-test-1", 10, team));
+            em.persist(new Member("warmup-test-2", 20));
+        });
+        Map<String, Runnable> shapes = warmup(new SimpleMeterRegistry(), 2.0).shapes();
+
+        //실패한 모양은 워밍업에서 빠지므로 모두 그대로 실행되어야 한다
+        shapes.values().forEach(Runnable::run);
+        assertThat(shapes).containsKey("rows");
+    }
+
+    @Test
+    public void recordsSteadyState() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        //시간 흔들림에 걸리지 않도록 tolerance 를 넉넉하게
+        warmup(meterRegistry, 100.0).run(new DefaultApplicationArguments());
+
+        assertThat(meterRegistry.get("member.warmup.steady-state-ms").gauge().value()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void coldFirstRoundIsNotCounted() {
+        MemberWarmup.SteadyState steadyState = new MemberWarmup.SteadyState(2, 1.2);
+
+        steadyState.add(1000);
+        steadyState.add(100);
+        assertThat(steadyState.isReached()).isFalse();
+        steadyState.add(110);
+        assertThat(steadyState.isReached()).isTrue();
+    }
+
+    @Test
+    public void newMinimumRestartsStreak() {
+        MemberWarmup.SteadyState steadyState = new MemberWarmup.SteadyState(3, 1.2);
+
+        steadyState.add(1000);
+        steadyState.add(100);
+        steadyState.add(100);
+        //아직 데워지는 중: 이전 최솟값보다 tolerance 배 넘게 빨라졌다
+        steadyState.add(50);
+        steadyState.add(55);
+        assertThat(steadyState.isReached()).isFalse();
+        steadyState.add(58);
+        assertThat(steadyState.isReached()).isTrue();
+    }
+
+    @Test
+    public void slowRoundResetsStreak() {
+        MemberWarmup.SteadyState steadyState = new MemberWarmup.SteadyState(2, 1.2);
+
+        steadyState.add(1000);
+        steadyState.add(100);
+        steadyState.add(200);
+        steadyState.add(100);
+        assertThat(steadyState.isReached()).isFalse();
+        steadyState.add(105);
+        assertThat(steadyState.isReached()).isTrue();
+    }
+
+    private MemberWarmup warmup(SimpleMeterRegistry meterRegistry, double tolerance) {
+        return new MemberWarmup(memberRepository, memberJpaRepository, searchCoalescer, objectMapper, dataSource,
+                transactionManager, meterRegistry, 50, 3, tolerance);
+    }
+}
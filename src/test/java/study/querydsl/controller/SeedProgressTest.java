@@ -0,0 +1,62 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeedProgressTest {
+
+    private final SeedProgress progress = new SeedProgress();
+
+    @Test
+    public void idleIsUp() {
+        //초기 데이터를 넣지 않는 프로필
+        assertThat(progress.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(progress.snapshot())
+                .containsEntry("status", SeedProgress.Status.IDLE)
+                .containsEntry("inserted", 0L)
+                .doesNotContainKeys("elapsedMs", "error");
+    }
+
+    @Test
+    public void runningIsOutOfService() {
+        progress.start(100);
+        progress.inserted(30);
+
+        Health health = progress.health();
+        assertThat(health.getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(health.getDetails())
+                .containsEntry("status", SeedProgress.Status.RUNNING)
+                .containsEntry("inserted", 30L)
+                .containsEntry("total", 100L)
+                .containsKey("elapsedMs");
+    }
+
+    @Test
+    public void doneIsUp() {
+        progress.start(100);
+        progress.inserted(100);
+        progress.done();
+
+        assertThat(progress.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(progress.snapshot())
+                .containsEntry("status", SeedProgress.Status.DONE)
+                .containsEntry("inserted", 100L)
+                .containsKey("elapsedMs")
+                .doesNotContainKey("error");
+    }
+
+    @Test
+    public void failedIsDown() {
+        progress.start(100);
+        progress.failed(new IllegalStateException("boom"));
+
+        Health health = progress.health();
+        assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+        assertThat(health.getDetails())
+                .containsEntry("status", SeedProgress.Status.FAILED)
+                .containsEntry("error", "java.lang.IllegalStateException: boom");
+    }
+}
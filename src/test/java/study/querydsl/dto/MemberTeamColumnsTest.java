@@ -0,0 +1,39 @@
+package study.querydsl.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberTeamColumnsTest {
+
+    @Test
+    public void teamDictionary() {
+        MemberTeamColumns.Builder builder = MemberTeamColumns.builder();
+        //팀 코드 표가 여러 번 커지도록 팀을 많이 넣고, 팀 없는 행을 섞는다
+        for (int i = 0; i < 1000; i++) {
+            if (i % 7 == 0) {
+                builder.add(i, "member" + i, i % 100, null, null);
+            } else {
+                long teamId = (i % 100) * 1_000_003L;
+                builder.add(i, "member" + i, i % 100, teamId, "team" + teamId);
+            }
+        }
+        MemberTeamColumns columns = builder.build();
+
+        assertThat(columns.size()).isEqualTo(1000);
+        assertThat(columns.getTeamCount()).isEqualTo(100);
+        for (MemberTeamColumns.Row row : columns) {
+            int i = row.getIndex();
+            assertThat(row.getMemberId()).isEqualTo(i);
+            assertThat(row.getUsername()).isEqualTo("member" + i);
+            assertThat(row.getAge()).isEqualTo(i % 100);
+            if (i % 7 == 0) {
+                assertThat(row.hasTeam()).isFalse();
+                assertThat(row.getTeamName()).isNull();
+            } else {
+                assertThat(row.getTeamId()).isEqualTo((i % 100) * 1_000_003L);
+                assertThat(row.getTeamName()).isEqualTo("team" + row.getTeamId());
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberTeamPageTest {
+
+    @Test
+    public void serialize() throws Exception {
+        MemberTeamPage page = new MemberTeamPage(Arrays.asList(
+                new MemberTeamDto(1L, "member1", 10, 100L, "teamA"),
+                new MemberTeamDto(2L, "member2", 20, null, null)), 0, 2, 5, true);
+
+        JsonNode json = new ObjectMapper().readTree(new ObjectMapper().writeValueAsString(page));
+
+        assertThat(json.get("content")).hasSize(2);
+        assertThat(json.get("content").get(0).get("username").asText()).isEqualTo("member1");
+        //id 는 기본이 숫자
+        assertThat(json.get("content").get(0).get("memberId").isNumber()).isTrue();
+        assertThat(json.get("content").get(0).get("teamId").asLong()).isEqualTo(100);
+        assertThat(json.get("content").get(1).get("teamName").isNull()).isTrue();
+        assertThat(json.get("page").asInt()).isEqualTo(0);
+        assertThat(json.get("total").asLong()).isEqualTo(5);
+        assertThat(json.get("hasNext").asBoolean()).isTrue();
+        assertThat(json.has("pageable")).isFalse();
+    }
+
+    @Test
+    public void serializeIdsAsStrings() throws Exception {
+        MemberTeamPage page = new MemberTeamPage(Arrays.asList(
+                new MemberTeamDto(Long.MAX_VALUE, "member1", 10, 100L, "teamA")), 0, 1, 1, false);
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setDefaultAttributes(JsonIds.attributes(true));
+
+        JsonNode json = mapper.readTree(mapper.writeValueAsString(page));
+
+        //63bit id 는 JavaScript 에서 정밀도를 잃지 않도록 문자열
+        assertThat(json.get("content").get(0).get("memberId").asText()).isEqualTo(Long.toString(Long.MAX_VALUE));
+        assertThat(json.get("content").get(0).get("teamId").isTextual()).isTrue();
+        assertThat(json.get("content").get(0).get("age").isNumber()).isTrue();
+    }
+
+    @Test
+    public void serializeSmile() throws Exception {
+        MemberTeamPage page = new MemberTeamPage(Arrays.asList(
+                new MemberTeamDto(1L, "member1", 10, 100L, "teamA")), 0, 1, 1, false);
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+        JsonNode json = smile.readTree(smile.writeValueAsBytes(page));
+
+        assertThat(json.get("content").get(0).get("age").asInt()).isEqualTo(10);
+        assertThat(json.get("hasNext").asBoolean()).isFalse();
+    }
+}
@@ -8,6 +8,7 @@ import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
@@ -50,6 +51,34 @@ public class MemberTest {
             System.out.println("-> member.team=" + member.getTeam());
         }
     }
+    @Test
+    public void changeTeamAddsOnce() {
+        Team teamA = new Team("teamA");
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+
+        assertThat(teamA.getMembers()).containsExactly(member1, member2);
+    }
+
+    @Test
+    public void changeTeamDoesNotLoadMembers() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.flush();
+        em.clear();
+
+        Team teamRef = em.getReference(Team.class, teamA.getId());
+        em.persist(new Member("member2", 20, teamRef));
+        assertThat(Hibernate.isInitialized(teamRef)).isFalse();
+        em.flush();
+        em.clear();
+
+        Team findTeam = em.find(Team.class, teamA.getId());
+        assertThat(findTeam.getMembers()).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2");
+    }
+
     @Test
     public void startJPQL() {
         //member1을 찾아라.
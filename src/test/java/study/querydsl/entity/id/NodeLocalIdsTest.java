@@ -0,0 +1,201 @@
+package study.querydsl.entity.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NodeLocalIdsTest {
+
+    @Test
+    public void uniqueUnderContention() throws Exception {
+        NodeLocalIds ids = new NodeLocalIds(7, System::currentTimeMillis);
+        int threads = 64;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<long[]>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                long[] result = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    result[i] = ids.next();
+                }
+                return result;
+            });
+        }
+        List<Future<long[]>> futures = executor.invokeAll(tasks);
+        executor.shutdown();
+
+        Set<Long> all = new HashSet<>();
+        for (Future<long[]> future : futures) {
+            long[] result = future.get();
+            for (int i = 0; i < result.length; i++) {
+                if (i > 0) {
+                    assertThat(result[i]).isGreaterThan(result[i - 1]);
+                }
+                all.add(result[i]);
+            }
+        }
+        assertThat(all).hasSize(threads * perThread);
+        assertThat(ids.getClockRollbacks()).isZero();
+    }
+
+    @Test
+    public void sequenceOverflowIsNotRollback() {
+        AtomicLong now = new AtomicLong(NodeLocalIds.EPOCH + 10_000);
+        NodeLocalIds ids = new NodeLocalIds(1, now::get);
+        long last = 0;
+        //같은 ms 에 sequence(4096) 의 3배를 발급하면 논리 시각이 2ms 앞선다
+        for (int i = 0; i < 3 * 4096; i++) {
+            long id = ids.next();
+            assertThat(id).isGreaterThan(last);
+            last = id;
+        }
+        assertThat(NodeLocalIds.timestampOf(last).toEpochMilli()).isEqualTo(now.get() + 2);
+        assertThat(ids.getClockRollbacks()).isZero();
+    }
+
+    @Test
+    public void restartAfterBurstDoesNotReissue() {
+        AtomicLong now = new AtomicLong(NodeLocalIds.EPOCH + 10_000);
+        MemoryLease lease = new MemoryLease();
+        NodeLocalIds before = new NodeLocalIds(1, now::get);
+        before.useLease(lease, 100);
+        long last = 0;
+        //논리 시각이 실제 시각보다 500ms 앞설 때까지 발급
+        for (int i = 0; i < 500 * 4096; i++) {
+            last = before.next();
+        }
+        assertThat(NodeLocalIds.timestampOf(last).toEpochMilli()).isGreaterThan(now.get() + 400);
+
+        //시계가 그대로인 채로 재시작해도 임대된 구간 뒤에서 발급
+        NodeLocalIds restarted = new NodeLocalIds(1, now::get);
+        restarted.useLease(lease, 100);
+        assertThat(restarted.next()).isGreaterThan(last);
+    }
+
+    @Test
+    public void sameNodeIdInTwoProcessesDoesNotOverlap() throws Exception {
+        MemoryLease lease = new MemoryLease();
+        NodeLocalIds first = new NodeLocalIds(3, System::currentTimeMillis);
+        NodeLocalIds second = new NodeLocalIds(3, System::currentTimeMillis);
+        first.useLease(lease, 20);
+        second.useLease(lease, 20);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Callable<long[]> fromFirst = () -> issue(first, 50_000);
+        Callable<long[]> fromSecond = () -> issue(second, 50_000);
+        List<Future<long[]>> futures = executor.invokeAll(List.of(fromFirst, fromSecond));
+        executor.shutdown();
+
+        Set<Long> all = new HashSet<>();
+        for (Future<long[]> future : futures) {
+            for (long id : future.get()) {
+                all.add(id);
+            }
+        }
+        assertThat(all).hasSize(100_000);
+    }
+
+    @Test
+    public void renewsOnlyInBackground() {
+        AtomicLong now = new AtomicLong(NodeLocalIds.EPOCH + 10_000);
+        RecordingLease lease = new RecordingLease();
+        NodeLocalIds ids = new NodeLocalIds(4, now::get);
+        ids.useLease(lease, 10);
+        lease.threads.clear();
+
+        //시계를 멈춘 채로 임대 구간 여러 개를 다 쓰도록 발급
+        long last = 0;
+        for (int i = 0; i < 50 * 4096; i++) {
+            long id = ids.next();
+            assertThat(id).isGreaterThan(last);
+            last = id;
+        }
+
+        //발급 스레드는 연장을 기다리기만 하고 직접 임대하지 않는다
+        assertThat(lease.threads).isNotEmpty()
+                .allMatch(name -> name.startsWith("node-local-id-lease-"));
+    }
+
+    @Test
+    public void failsWhenLeaseIsNotRenewed() {
+        AtomicLong now = new AtomicLong(NodeLocalIds.EPOCH + 10_000);
+        AtomicBoolean available = new AtomicBoolean(true);
+        NodeLocalIds ids = new NodeLocalIds(5, now::get);
+        ids.useLease((from, millis) -> {
+            if (!available.get()) {
+                throw new IllegalStateException("lease store unavailable");
+            }
+            return from;
+        }, 10);
+        available.set(false);
+
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 20 * 4096; i++) {
+                ids.next();
+            }
+        }).isInstanceOf(IllegalStateException.class).hasMessageContaining("not renewed");
+    }
+
+    @Test
+    public void clockRollback() {
+        AtomicLong now = new AtomicLong(NodeLocalIds.EPOCH + 10_000);
+        NodeLocalIds ids = new NodeLocalIds(1, now::get);
+        long first = ids.next();
+        now.addAndGet(-5_000);
+        long second = ids.next();
+        assertThat(second).isGreaterThan(first);
+        assertThat(ids.getClockRollbacks()).isEqualTo(1);
+        now.addAndGet(10_000);
+        long third = ids.next();
+        assertThat(NodeLocalIds.timestampOf(third).toEpochMilli()).isEqualTo(now.get());
+    }
+
+    private static long[] issue(NodeLocalIds ids, int count) {
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = ids.next();
+        }
+        return result;
+    }
+
+    /**
+     * 어느 스레드에서 임대했는지 남기는 임대
+     */
+    static class RecordingLease extends MemoryLease {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public synchronized long acquire(long from, long millis) {
+            threads.add(Thread.currentThread().getName());
+            return super.acquire(from, millis);
+        }
+    }
+
+    /**
+     * node_id_lease 대신 메모리에 high water 를 두는 임대
+     */
+    static class MemoryLease implements NodeLocalIds.Lease {
+        private long highWater;
+
+        @Override
+        public synchronized long acquire(long from, long millis) {
+            long start = Math.max(from, highWater);
+            highWater = start + millis;
+            return start;
+        }
+    }
+}
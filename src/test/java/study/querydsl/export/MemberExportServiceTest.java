@@ -0,0 +1,140 @@
+package study.querydsl.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * export 는 별도 스레드에서 조회하므로 회원을 커밋한 뒤 실행하고 직접 지운다.
+ */
+@SpringBootTest
+class MemberExportServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Autowired
+    MemberExportController controller;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("export-1", 10));
+            em.persist(new Member("export-2", 20));
+            em.persist(new Member("export-3", 30));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Member m where m.username like 'export-%'")
+                .executeUpdate());
+    }
+
+    @Test
+    public void submitStatusDownload() throws Exception {
+        ResponseEntity<MemberExportJob> submitted = controller.submit(condition(), ExportFormat.CSV);
+        assertThat(submitted.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        MemberExportJob job = submitted.getBody();
+        assertThat(submitted.getHeaders().getLocation()).hasToString("/exports/members/" + job.getId());
+
+        job.getFinished().get(10, TimeUnit.SECONDS);
+        MemberExportJob status = controller.status(job.getId());
+        assertThat(status.getStatus()).isEqualTo(MemberExportJob.Status.DONE);
+        assertThat(status.getRows()).isEqualTo(3);
+        assertThat(status.getError()).isNull();
+
+        ResponseEntity<Resource> download = controller.download(job.getId());
+        assertThat(download.getHeaders().getContentDisposition().getFilename()).isEqualTo(job.getFileName());
+        assertThat(lines(download.getBody())).hasSize(4)
+                .first().isEqualTo("memberId,username,age,teamId,teamName");
+        assertThat(lines(download.getBody())).anyMatch(line -> line.endsWith(",export-2,20,,"));
+
+        assertThatThrownBy(() -> controller.status("unknown"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    public void expiredJobsAndFilesAreRemoved() throws Exception {
+        //보관 기간 0: 끝난 작업은 바로 만료
+        MemberExportService service = new MemberExportService(memberJpaRepository, objectMapper, dir.toString(),
+                1, 1, 0, 10);
+        try {
+            MemberExportJob job = service.submit(condition(), ExportFormat.JSONL);
+            job.getFinished().get(10, TimeUnit.SECONDS);
+            assertThat(Files.exists(job.getFile())).isTrue();
+            Path orphan = Files.createFile(dir.resolve("members-before-restart.csv.gz"));
+            Files.setLastModifiedTime(orphan, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+
+            Thread.sleep(10);
+            service.removeExpired();
+
+            assertThat(service.find(job.getId())).isEmpty();
+            assertThat(Files.exists(job.getFile())).isFalse();
+            assertThat(Files.exists(orphan)).isFalse();
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void failedJobHidesDetails() {
+        MemberExportJob job = new MemberExportJob("job-1", ExportFormat.CSV, condition(), dir.resolve("x"));
+        job.failed(new IllegalStateException("select secret from member where path = '/var/data'"));
+
+        assertThat(job.getStatus()).isEqualTo(MemberExportJob.Status.FAILED);
+        assertThat(job.getError()).isEqualTo("export failed (job job-1)");
+    }
+
+    private static MemberSearchCondition condition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernames(Arrays.asList("export-1", "export-2", "export-3"));
+        return condition;
+    }
+
+    private static List<String> lines(Resource resource) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(resource.getInputStream()), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package study.querydsl.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import study.querydsl.entity.id.NodeLocalIds;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvSegmentParserTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void parseRows() {
+        TeamInserts inserts = new TeamInserts();
+        TeamDictionary teams = new TeamDictionary(inserts, NodeLocalIds.forNode(0));
+        List<RowBatch> batches = new ArrayList<>();
+        String csv = "username,age,teamName\r\n" +
+                "member1,10,teamA\r\n" +
+                "\n" +
+                "member2,-3,teamB\n" +
+                "member3,20,\n" +
+                "member4,30\n" +
+                "member5,40,teamA";
+
+        long rows = new CsvSegmentParser(teams, 2, batches::add).parse(buffer(csv), 0, true);
+
+        assertThat(rows).isEqualTo(5);
+        assertThat(batches).extracting(b -> b.size).containsExactly(2, 2, 1);
+        RowBatch first = batches.get(0);
+        assertThat(first.usernames).containsExactly("member1", "member2");
+        assertThat(first.ages).containsExactly(10, -3);
+        assertThat(batches.get(1).teamIds).containsExactly(RowBatch.NO_TEAM, RowBatch.NO_TEAM);
+        //같은 팀 이름은 한 번만 만든다
+        assertThat(inserts.names).containsExactly("teamA", "teamB");
+        assertThat(batches.get(2).teamIds[0]).isEqualTo(first.teamIds[0]);
+    }
+
+    @Test
+    public void invalidAgeReportsByteOffset() {
+        TeamDictionary teams = new TeamDictionary(new TeamInserts(), NodeLocalIds.forNode(0));
+        CsvSegmentParser parser = new CsvSegmentParser(teams, 10, batch -> {
+        });
+        assertThatThrownBy(() -> parser.parse(buffer("member1,10\nmember2,x1\n"), 100, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at byte 119");
+    }
+
+    @Test
+    public void splitAtLineBoundaries() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            csv.append("member").append(i).append(',').append(i % 100).append(",team").append(i % 7).append('\n');
+        }
+        Path file = dir.resolve("members.csv");
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = Files.readAllBytes(file);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            List<long[]> segments = MemberCsvImporter.split(channel, bytes.length, 100);
+            assertThat(segments.size()).isGreaterThan(1);
+            long expectedStart = 0;
+            for (long[] segment : segments) {
+                assertThat(segment[0]).isEqualTo(expectedStart);
+                assertThat(segment[1] - segment[0]).isGreaterThanOrEqualTo(Math.min(100, bytes.length - segment[0]));
+                assertThat(bytes[(int) segment[1] - 1]).isEqualTo((byte) '\n');
+                expectedStart = segment[1];
+            }
+            assertThat(expectedStart).isEqualTo(bytes.length);
+        }
+    }
+
+    private static ByteBuffer buffer(String csv) {
+        return ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * DB 없이 팀 사전을 쓰기 위한 JdbcTemplate (기존 팀 없음, 새 팀 insert 만 기록)
+     */
+    static class TeamInserts extends JdbcTemplate {
+        final List<String> names = new ArrayList<>();
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch) {
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            names.add((String) args[1]);
+            return 1;
+        }
+    }
+}
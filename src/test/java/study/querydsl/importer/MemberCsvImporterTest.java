@@ -0,0 +1,93 @@
+package study.querydsl.importer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.entity.id.NodeLocalIds;
+import study.querydsl.repository.support.DataVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+/**
+ * import 는 batch 마다 커밋하므로 테스트 트랜잭션 없이 실행하고 직접 지운다.
+ */
+@SpringBootTest
+class MemberCsvImporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    NodeLocalIds ids;
+    @Autowired
+    DataVersion dataVersion;
+
+    @AfterEach
+    public void after() {
+        jdbcTemplate.update("delete from member where username like 'csv-%'");
+        jdbcTemplate.update("delete from team where name like 'csv-%'");
+    }
+
+    @Test
+    public void importFile() throws Exception {
+        Path file = csv(2500, null);
+
+        CsvImportResult result = importer(1000).importFile(file);
+
+        assertThat(result.getRows()).isEqualTo(2500);
+        assertThat(result.getBatches()).isEqualTo(3);
+        assertThat(result.getCreatedTeams()).isEqualTo(3);
+        assertThat(count()).isEqualTo(2500);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from member m join team t on m.team_id = t.team_id where t.name = 'csv-team1'",
+                Long.class)).isEqualTo(833);
+    }
+
+    @Test
+    public void failureReportsCommittedRows() throws Exception {
+        Path file = csv(2500, "csv-broken,not-a-number,csv-team0");
+
+        CsvImportException e = catchThrowableOfType(() -> importer(100).importFile(file), CsvImportException.class);
+
+        assertThat(e).isNotNull();
+        assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+        CsvImportResult committed = e.getCommitted();
+        assertThat(committed.getRows()).isEqualTo(count());
+        assertThat(committed.getRows()).isEqualTo(committed.getBatches() * 100);
+        assertThat(committed.getCreatedTeams()).isEqualTo(3);
+    }
+
+    private MemberCsvImporter importer(int batchSize) {
+        return new MemberCsvImporter(jdbcTemplate, transactionManager, ids, dataVersion, 1, 2, 2, batchSize, 4);
+    }
+
+    private Path csv(int rows, String lastLine) throws Exception {
+        StringBuilder csv = new StringBuilder("username,age,teamName\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("csv-").append(i).append(',').append(i % 100).append(",csv-team").append(i % 3).append('\n');
+        }
+        if (lastLine != null) {
+            csv.append(lastLine).append('\n');
+        }
+        Path file = dir.resolve("members.csv");
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private long count() {
+        return jdbcTemplate.queryForObject("select count(*) from member where username like 'csv-%'", Long.class);
+    }
+}
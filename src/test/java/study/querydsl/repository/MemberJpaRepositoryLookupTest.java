@@ -0,0 +1,193 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.IdLookup;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.id.NodeLocalIds;
+import study.querydsl.repository.support.DataVersion;
+import study.querydsl.repository.support.MemberSearchStaging;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 트랜잭션 밖에서 청크를 동시에 조회하는 findMemberTeamsByIds 경로
+ * 청크마다 다른 커넥션에서 읽으므로 테스트 트랜잭션(@Transactional) 없이 데이터를 커밋하고 직접 지운다.
+ */
+@SpringBootTest
+class MemberJpaRepositoryLookupTest {
+
+    private static final String PREFIX = "lookup-test-";
+    //청크 1000 개씩 8 청크
+    private static final int MEMBERS = 7500;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberWriteBuffer writeBuffer;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    NodeLocalIds ids;
+    @Autowired
+    DataVersion dataVersion;
+    @Autowired
+    MemberSearchStaging searchStaging;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    TransactionTemplate tx;
+
+    List<Long> memberIds = new ArrayList<>();
+    List<MemberJpaRepository> repositories = new ArrayList<>();
+    Long teamId;
+
+    @BeforeEach
+    public void before() {
+        teamId = tx.execute(status -> {
+            Team team = new Team(PREFIX + "team");
+            em.persist(team);
+            return team.getId();
+        });
+        List<Object[]> rows = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            long id = ids.next();
+            memberIds.add(id);
+            rows.add(new Object[]{id, PREFIX + i, i, i % 2 == 0 ? teamId : null});
+        }
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", rows);
+    }
+
+    @AfterEach
+    public void after() {
+        repositories.forEach(MemberJpaRepository::shutdown);
+        jdbcTemplate.update("delete from member where username like ?", PREFIX + "%");
+        jdbcTemplate.update("delete from team where team_id = ?", teamId);
+    }
+
+    @Test
+    public void keepsRequestOrderAcrossChunks() {
+        RecordingQueryFactory queryFactory = new RecordingQueryFactory(em);
+        MemberJpaRepository repository = repository(queryFactory, 4);
+
+        List<Long> requested = new ArrayList<>(memberIds);
+        Collections.shuffle(requested, new Random(42));
+        //없는 id, 중복 id 를 사이사이에 섞는다
+        for (int i = 0; i < 20; i++) {
+            requested.add(i * 300, -1L - i);
+        }
+        requested.add(requested.get(0));
+
+        IdLookup<MemberTeamDto> lookup = repository.findMemberTeamsByIds(requested);
+
+        List<Long> expectedFound = new ArrayList<>();
+        List<Long> expectedMissing = new ArrayList<>();
+        for (Long id : requested) {
+            List<Long> expected = id > 0 ? expectedFound : expectedMissing;
+            if (!expected.contains(id)) {
+                expected.add(id);
+            }
+        }
+        assertThat(lookup.getFound()).extracting(MemberTeamDto::getMemberId).containsExactlyElementsOf(expectedFound);
+        assertThat(lookup.getMissing()).containsExactlyElementsOf(expectedMissing);
+        assertThat(lookup.getFound()).filteredOn(dto -> dto.getTeamId() != null)
+                .allMatch(dto -> dto.getTeamName().equals(PREFIX + "team"));
+        //8 청크를 조회 풀에서 나눠 읽는다
+        assertThat(queryFactory.selects).hasValue(8);
+        assertThat(queryFactory.threads).allMatch(name -> name.startsWith("member-lookup-"));
+    }
+
+    @Test
+    public void runsOnCallerWhenPoolIsFull() {
+        //worker 1, 대기열 4 이므로 첫 청크를 잡아 두면 6 번째 청크부터 호출한 스레드에서 실행된다
+        RecordingQueryFactory queryFactory = new RecordingQueryFactory(em);
+        queryFactory.blockWorkerUntilCallerRuns = new CountDownLatch(1);
+        MemberJpaRepository repository = repository(queryFactory, 1);
+
+        IdLookup<MemberTeamDto> lookup = repository.findMemberTeamsByIds(memberIds);
+
+        assertThat(lookup.getFound()).extracting(MemberTeamDto::getMemberId).containsExactlyElementsOf(memberIds);
+        assertThat(lookup.getMissing()).isEmpty();
+        assertThat(queryFactory.threads).contains(Thread.currentThread().getName(), "member-lookup-1");
+    }
+
+    @Test
+    public void rethrowsChunkFailureUnwrapped() {
+        RecordingQueryFactory queryFactory = new RecordingQueryFactory(em);
+        queryFactory.failOnWorker = true;
+        MemberJpaRepository repository = repository(queryFactory, 4);
+
+        assertThatThrownBy(() -> repository.findMemberTeamsByIds(memberIds))
+                .isInstanceOf(DataAccessResourceFailureException.class)
+                .hasMessage("injected failure");
+    }
+
+    private MemberJpaRepository repository(JPAQueryFactory queryFactory, int lookupWorkers) {
+        MemberJpaRepository repository = new MemberJpaRepository(em, queryFactory, writeBuffer, jdbcTemplate, ids,
+                dataVersion, searchStaging, transactionManager, lookupWorkers);
+        repositories.add(repository);
+        return repository;
+    }
+
+    static class RecordingQueryFactory extends JPAQueryFactory {
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger selects = new AtomicInteger();
+        volatile boolean failOnWorker;
+        volatile CountDownLatch blockWorkerUntilCallerRuns;
+
+        RecordingQueryFactory(EntityManager em) {
+            super(em);
+        }
+
+        @Override
+        public <T> JPAQuery<T> select(Expression<T> expr) {
+            String thread = Thread.currentThread().getName();
+            threads.add(thread);
+            selects.incrementAndGet();
+            boolean worker = thread.startsWith("member-lookup-");
+            if (worker && failOnWorker) {
+                throw new DataAccessResourceFailureException("injected failure");
+            }
+            CountDownLatch latch = blockWorkerUntilCallerRuns;
+            if (latch != null) {
+                if (worker) {
+                    await(latch);
+                } else {
+                    latch.countDown();
+                }
+            }
+            return super.select(expr);
+        }
+
+        private static void await(CountDownLatch latch) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
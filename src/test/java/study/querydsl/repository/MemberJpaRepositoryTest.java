@@ -4,16 +4,21 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.IdLookup;
+import study.querydsl.dto.MemberImport;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UpsertOutcome;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -50,6 +55,57 @@ class MemberJpaRepositoryTest {
         assertThat(result2).containsExactly(member);
     }
 
+    @Test
+    public void addAgeTest() {
+        Member member = new Member("member1", 10);
+        memberJpaRepository.save(member);
+        em.flush();
+        em.clear();
+        memberJpaRepository.addAge(member.getId(), 1).join();
+        memberJpaRepository.addAge(member.getId(), 2).join();
+        Member findMember = memberJpaRepository.findById(member.getId()).get();
+        assertThat(findMember.getAge()).isEqualTo(13);
+    }
+
+    @Test
+    public void findAllByIdsTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20);
+        memberJpaRepository.save(member1);
+        memberJpaRepository.save(member2);
+        em.flush();
+        em.clear();
+
+        List<Long> ids = Arrays.asList(member2.getId(), -1L, member1.getId(), member2.getId());
+        IdLookup<Member> members = memberJpaRepository.findAllByIds(ids);
+        assertThat(members.getFound()).extracting("username").containsExactly("member2", "member1");
+        assertThat(members.getMissing()).containsExactly(-1L);
+
+        //member1, member2 는 영속성 컨텍스트에 있다
+        IdLookup<MemberTeamDto> dtos = memberJpaRepository.findMemberTeamsByIds(ids);
+        assertThat(dtos.getFound()).extracting("username", "teamName")
+                .containsExactly(tuple("member2", null), tuple("member1", "teamA"));
+        assertThat(dtos.getMissing()).containsExactly(-1L);
+    }
+
+    @Test
+    public void upsertAllTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        List<UpsertOutcome> outcomes = memberJpaRepository.upsertAll(Arrays.asList(
+                new MemberImport("member1", 11, "teamA"),
+                new MemberImport("member2", 20, "teamB")));
+        assertThat(outcomes).containsExactly(UpsertOutcome.UPDATED, UpsertOutcome.INSERTED);
+        em.clear();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        List<MemberTeamDto> result = memberJpaRepository.search(condition);
+        assertThat(result).extracting("username", "age", "teamName")
+                .containsExactlyInAnyOrder(tuple("member1", 11, "teamA"), tuple("member2", 20, "teamB"));
+    }
+
     @Test
     public void searchTest() {
         Team teamA = new Team("teamA");
@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamAgeStats;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.id.NodeLocalIds;
+import study.querydsl.repository.support.PartitionedScan;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 범위마다 다른 커넥션에서 읽으므로 테스트 트랜잭션(@Transactional) 없이 데이터를 커밋하고 직접 지운다.
+ * 테스트 설정은 member.scan.min-rows-per-partition=100 이라서 2000 건이면 여러 범위로 나뉜다.
+ */
+@SpringBootTest
+class MemberReportRepositoryTest {
+
+    private static final String PREFIX = "report-test-";
+    private static final int MEMBERS = 2000;
+
+    @Autowired
+    MemberReportRepository reportRepository;
+    @Autowired
+    PartitionedScan scan;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    NodeLocalIds ids;
+    @Autowired
+    TransactionTemplate tx;
+
+    List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                Team created = new Team(PREFIX + "team" + i);
+                em.persist(created);
+                teamIds.add(created.getId());
+            }
+        });
+        List<Object[]> rows = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            //넷 중 하나는 팀 없음
+            Long teamId = i % 4 == 3 ? null : teamIds.get(i % 4);
+            rows.add(new Object[]{ids.next(), PREFIX + i, i % 90, teamId});
+        }
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", rows);
+    }
+
+    @AfterEach
+    public void after() {
+        jdbcTemplate.update("delete from member where username like ?", PREFIX + "%");
+        jdbcTemplate.update("delete from team where name like ?", PREFIX + "%");
+    }
+
+    @Test
+    public void partitionedMatchesSingleStatement() {
+        List<TeamAgeStats> partitioned = reportRepository.teamAgeStats();
+
+        List<TeamAgeStats> single = new ArrayList<>();
+        tx.executeWithoutResult(status -> em.createQuery(
+                        "select t.id, t.name, count(m), sum(m.age), min(m.age), max(m.age) "
+                                + "from Member m left join m.team t group by t.id, t.name", Object[].class)
+                .getResultList()
+                .forEach(row -> single.add(new TeamAgeStats((Long) row[0], (String) row[1],
+                        ((Number) row[2]).longValue(), ((Number) row[3]).longValue(),
+                        ((Number) row[4]).intValue(), ((Number) row[5]).intValue()))));
+
+        assertThat(partitioned).containsExactlyInAnyOrderElementsOf(single);
+        assertThat(partitioned).isSortedAccordingTo(Comparator.comparing(TeamAgeStats::getTeamName,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        TeamAgeStats team0 = partitioned.stream()
+                .filter(stats -> (PREFIX + "team0").equals(stats.getTeamName()))
+                .findFirst().get();
+        assertThat(team0.getCount()).isEqualTo(MEMBERS / 4);
+        assertThat(team0.getMinAge()).isEqualTo(0);
+        assertThat(team0.getMaxAge()).isEqualTo(88);
+    }
+
+    @Test
+    public void rangesCoverEveryRowOnce() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<BooleanExpression> ranges = new ArrayList<>();
+
+        long counted = scan.scan(member, member.id, range -> {
+            threads.add(Thread.currentThread().getName());
+            synchronized (ranges) {
+                ranges.add(range);
+            }
+            return queryFactory
+                    .select(member.count())
+                    .from(member)
+                    .where(range)
+                    .fetchOne();
+        }, Long::sum);
+
+        //표본(function('rand'))으로 나눈 범위가 여럿이고, 겹치거나 빠진 행이 없다
+        long total = tx.execute(status -> em.createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult());
+        assertThat(counted).isEqualTo(total);
+        assertThat(ranges).hasSizeGreaterThan(1).doesNotContainNull();
+        assertThat(threads).allMatch(name -> name.startsWith("member-scan-"));
+    }
+
+    @Test
+    public void propagatesDeadlineToWorkers() {
+        QueryDeadline deadline = QueryDeadline.after(Duration.ofSeconds(30));
+        List<Optional<QueryDeadline>> seen = Collections.synchronizedList(new ArrayList<>());
+
+        long leaves = deadline.run(() -> scan.scan(member, member.id, range -> {
+            seen.add(QueryDeadline.current());
+            return 1L;
+        }, Long::sum));
+
+        //워커 스레드에서도 호출한 쪽 마감이 보인다
+        assertThat(seen).hasSize((int) leaves).containsOnly(Optional.of(deadline));
+
+        //마감이 지나면 범위 쿼리가 보내지지 않고 그대로 실패한다
+        QueryDeadline expired = QueryDeadline.after(Duration.ZERO);
+        assertThatThrownBy(() -> expired.run(reportRepository::teamAgeStats))
+                .isInstanceOf(QueryTimeoutException.class);
+    }
+}
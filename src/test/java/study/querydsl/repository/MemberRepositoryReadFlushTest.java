@@ -0,0 +1,26 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.repository.MemberRepositoryReadFlush.isRead;
+
+class MemberRepositoryReadFlushTest {
+
+    @Test
+    public void flushesOnlyBeforeSpringDataReads() throws Exception {
+        assertThat(isRead(MemberRepository.class.getMethod("findByUsername", String.class))).isTrue();
+        assertThat(isRead(MemberRepository.class.getMethod("findById", Object.class))).isTrue();
+        assertThat(isRead(MemberRepository.class.getMethod("findAll"))).isTrue();
+        assertThat(isRead(MemberRepository.class.getMethod("count", Predicate.class))).isTrue();
+
+        //쓰기 메서드와 직접 반영하는 커스텀 구현은 건너뛴다
+        assertThat(isRead(MemberRepository.class.getMethod("save", Object.class))).isFalse();
+        assertThat(isRead(MemberRepository.class.getMethod("deleteById", Object.class))).isFalse();
+        assertThat(isRead(MemberRepository.class.getMethod("flush"))).isFalse();
+        assertThat(isRead(MemberRepository.class.getMethod("search", MemberSearchCondition.class))).isFalse();
+        assertThat(isRead(Object.class.getMethod("hashCode"))).isFalse();
+    }
+}
@@ -6,13 +6,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.archive.MemberArchive;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -23,6 +26,8 @@ class MemberRepositoryTest {
     EntityManager em;
     @Autowired
     MemberRepository memberRepository;
+    @Autowired
+    MemberArchive archive;
     @Test
     public void basicTest() {
         Member member = new Member("member1", 10);
@@ -57,6 +62,55 @@ class MemberRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
+    @Test
+    public void searchBySqlTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+        em.flush();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(35);
+        condition.setAgeLoe(40);
+        condition.setTeamName("teamB");
+        List<MemberTeamDto> result = memberRepository.search(condition, SearchEngine.SQL);
+        assertThat(result).extracting("username").containsExactly("member4");
+        assertThat(result).extracting("teamId").containsExactly(teamB.getId());
+    }
+
+    @Test
+    public void searchColumnsTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40));
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+        MemberTeamColumns result = memberRepository.searchColumns(condition);
+        assertThat(result.size()).isEqualTo(3);
+        assertThat(result.getTeamCount()).isEqualTo(2);
+        //팀이 없는 행이 섞여도 컬럼이 어긋나지 않는다
+        List<String> rows = new ArrayList<>();
+        for (MemberTeamColumns.Row row : result) {
+            rows.add(row.getUsername() + ":" + row.getAge() + ":" + row.hasTeam() + ":" + row.getTeamName()
+                    + ":" + (row.hasTeam() ? result.getTeamName(row.getIndex()) : null));
+        }
+        assertThat(rows).containsExactlyInAnyOrder(
+                "member2:20:true:teamA:teamA", "member3:30:true:teamB:teamB", "member4:40:false:null:null");
+    }
+
     @Test
     public void searchTestSimple() {
         Team teamA = new Team("teamA");
@@ -84,6 +138,32 @@ class MemberRepositoryTest {
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
     }
 
+    @Test
+    public void searchPageIncludesArchived() {
+        //보관소는 테스트 사이에 남으므로 실행마다 다른 팀 이름
+        String teamName = "archived-" + System.nanoTime();
+        Team team = new Team(teamName);
+        em.persist(team);
+        Member hot = new Member("archive-page-hot", 10, team);
+        em.persist(hot);
+        em.flush();
+        //DB 에도 남아 있는 회원(옮기는 도중)은 DB 쪽만, 보관소에만 있는 회원은 DB 결과 뒤에
+        MemberTeamDto cold = new MemberTeamDto(-100L, "archive-page-cold", 20, team.getId(), teamName);
+        archive.append(List.of(new MemberTeamDto(hot.getId(), "archive-page-hot", 99, team.getId(), teamName), cold));
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+
+        condition.setIncludeArchived(true);
+        Page<MemberTeamDto> first = memberRepository.searchPageSimple(condition, PageRequest.of(0, 1));
+        Page<MemberTeamDto> second = memberRepository.searchPageComplex(condition, PageRequest.of(1, 1));
+        assertThat(first.getTotalElements()).isEqualTo(2);
+        assertThat(first.getContent()).extracting("age").containsExactly(10);
+        assertThat(second.getTotalElements()).isEqualTo(2);
+        assertThat(second.getContent()).containsExactly(cold);
+    }
+
     @Test
     public void querydslPredicateExecutorTest() {
         Team teamA = new Team("teamA");
@@ -0,0 +1,225 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberWriteBuffer.Durability;
+import study.querydsl.repository.MemberWriteBuffer.Ordering;
+import study.querydsl.repository.support.DataVersion;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * member.write-behind.enabled=true 경로 테스트
+ * 반영을 직접 호출하도록 주기는 길게 잡고, 데이터는 커밋한 뒤 직접 지운다.
+ */
+@SpringBootTest
+class MemberWriteBufferTest {
+
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    DataVersion dataVersion;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    TransactionTemplate tx;
+
+    FailingJdbcTemplate jdbcTemplate;
+    List<MemberWriteBuffer> buffers = new ArrayList<>();
+
+    @AfterEach
+    public void after() {
+        buffers.forEach(MemberWriteBuffer::stop);
+        tx.executeWithoutResult(status -> em.createQuery("delete from Member m where m.username like 'wb-%'")
+                .executeUpdate());
+    }
+
+    @Test
+    public void coalescesUpdatesToSameMember() {
+        MemberWriteBuffer buffer = buffer(Durability.BUFFERED, Ordering.ID);
+        long id = insert("wb-1", 10);
+
+        buffer.addAge(id, 1);
+        buffer.addAge(id, 2);
+        buffer.changeUsername(id, "wb-a");
+        buffer.changeUsername(id, "wb-b");
+        buffer.addAge(id, 3);
+        assertThat(age(id)).isEqualTo(10);
+
+        assertThat(buffer.flush()).containsExactly(id);
+        assertThat(jdbcTemplate.batches).containsExactly(1);
+        assertThat(age(id)).isEqualTo(16);
+        assertThat(username(id)).isEqualTo("wb-b");
+        assertThat(buffer.hasPending()).isFalse();
+    }
+
+    @Test
+    public void flushesInIdOrArrivalOrder() {
+        long first = insert("wb-1", 0);
+        long second = insert("wb-2", 0);
+        long third = insert("wb-3", 0);
+
+        MemberWriteBuffer byId = buffer(Durability.BUFFERED, Ordering.ID);
+        byId.addAge(third, 1);
+        byId.addAge(first, 1);
+        byId.addAge(second, 1);
+        byId.addAge(third, 1);
+        assertThat(byId.flush()).containsExactly(first, second, third);
+
+        MemberWriteBuffer byArrival = buffer(Durability.BUFFERED, Ordering.ARRIVAL);
+        byArrival.addAge(third, 1);
+        byArrival.addAge(first, 1);
+        byArrival.addAge(second, 1);
+        byArrival.addAge(third, 1);
+        assertThat(byArrival.flush()).containsExactly(third, first, second);
+        assertThat(age(third)).isEqualTo(4);
+    }
+
+    @Test
+    public void bufferedRequeuesFailedFlush() {
+        MemberWriteBuffer buffer = buffer(Durability.BUFFERED, Ordering.ID);
+        long id = insert("wb-1", 0);
+
+        buffer.addAge(id, 2);
+        jdbcTemplate.failNext = true;
+        assertThatThrownBy(buffer::flush).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(buffer.hasPending()).isTrue();
+        //조회 경로는 반영에 실패해도 실패하지 않는다
+        jdbcTemplate.failNext = true;
+        assertThat(buffer.flushForRead()).isEmpty();
+
+        //실패한 수정과 새 수정이 합쳐져서 한 번에 반영된다
+        buffer.addAge(id, 1);
+        assertThat(buffer.flush()).containsExactly(id);
+        assertThat(age(id)).isEqualTo(3);
+    }
+
+    @Test
+    public void syncFailsWaitersWithoutRequeue() {
+        MemberWriteBuffer buffer = buffer(Durability.SYNC, Ordering.ID);
+        long id = insert("wb-1", 0);
+
+        CompletableFuture<Void> done = buffer.addAge(id, 2);
+        jdbcTemplate.failNext = true;
+        assertThatThrownBy(buffer::flush).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(done).isCompletedExceptionally();
+        assertThat(buffer.hasPending()).isFalse();
+        assertThat(age(id)).isEqualTo(0);
+    }
+
+    @Test
+    public void flushJoinsCallerTransaction() {
+        MemberWriteBuffer buffer = buffer(Durability.SYNC, Ordering.ID);
+        long version = dataVersion.current();
+
+        CompletableFuture<Void> done = tx.execute(status -> {
+            //커밋 전(영속성 컨텍스트에만 있는) 회원도 같은 트랜잭션에서 수정된다
+            Member member = new Member("wb-1", 0);
+            em.persist(member);
+            CompletableFuture<Void> future = buffer.addAge(member.getId(), 5);
+            buffer.flush();
+            assertThat(jdbcTemplate.queryForObject("select age from member where member_id = ?", Integer.class,
+                    member.getId())).isEqualTo(5);
+            assertThat(future).isNotDone();
+            return future;
+        });
+        assertThat(done).isCompleted();
+        assertThat(dataVersion.current()).isGreaterThan(version);
+    }
+
+    @Test
+    public void callerRollbackRequeues() {
+        MemberWriteBuffer buffer = buffer(Durability.BUFFERED, Ordering.ID);
+        long id = insert("wb-1", 0);
+
+        tx.executeWithoutResult(status -> {
+            buffer.addAge(id, 1);
+            buffer.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(age(id)).isEqualTo(0);
+        assertThat(buffer.hasPending()).isTrue();
+
+        buffer.flush();
+        assertThat(age(id)).isEqualTo(1);
+    }
+
+    @Test
+    public void flushForReadSkipsInsideReadOnlyTransaction() {
+        MemberWriteBuffer buffer = buffer(Durability.BUFFERED, Ordering.ID);
+        long id = insert("wb-1", 0);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        buffer.addAge(id, 1);
+        //커넥션을 쥔 채 별도 트랜잭션을 열지 않는다
+        assertThat(readOnly.execute(status -> buffer.flushForRead())).isEmpty();
+        assertThat(buffer.hasPending()).isTrue();
+
+        assertThat(buffer.flushForRead()).containsExactly(id);
+        assertThat(age(id)).isEqualTo(1);
+    }
+
+    private MemberWriteBuffer buffer(Durability durability, Ordering ordering) {
+        jdbcTemplate = new FailingJdbcTemplate(dataSource);
+        MemberWriteBuffer buffer = new MemberWriteBuffer(jdbcTemplate, em, dataVersion, transactionManager,
+                true, 1000, 60_000, durability, ordering);
+        buffer.start();
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private long insert(String username, int age) {
+        return tx.execute(status -> {
+            Member member = new Member(username, age);
+            em.persist(member);
+            return member.getId();
+        });
+    }
+
+    private int age(long id) {
+        return jdbcTemplate.queryForObject("select age from member where member_id = ?", Integer.class, id);
+    }
+
+    private String username(long id) {
+        return jdbcTemplate.queryForObject("select username from member where member_id = ?", String.class, id);
+    }
+
+    static class FailingJdbcTemplate extends JdbcTemplate {
+        boolean failNext;
+        final List<Integer> batches = new ArrayList<>();
+
+        FailingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            if (failNext) {
+                failNext = false;
+                throw new DataAccessResourceFailureException("injected failure");
+            }
+            batches.add(batchArgs.size());
+            return super.batchUpdate(sql, batchArgs, batchSize, pss);
+        }
+    }
+}
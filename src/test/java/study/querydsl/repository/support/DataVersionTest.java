@@ -0,0 +1,95 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 버전은 커밋 후에 올라가므로 테스트 트랜잭션(@Transactional) 없이 커밋/롤백을 확인한다.
+ * 테스트 설정은 poll-ms 가 0 이라 백그라운드로 맞추지 않는다. 노드 간 동기화는 {@link DataVersion#poll()} 을 직접 부른다.
+ */
+@SpringBootTest
+class DataVersionTest {
+
+    @Autowired
+    DataVersion dataVersion;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    TransactionTemplate tx;
+
+    @Test
+    public void changedOutsideTransaction() {
+        long before = dataVersion.current();
+
+        dataVersion.changed();
+
+        assertThat(dataVersion.current()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void changedOncePerTransaction() {
+        long before = dataVersion.current();
+
+        tx.executeWithoutResult(status -> {
+            dataVersion.changed();
+            dataVersion.changed();
+        });
+
+        assertThat(dataVersion.current()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void rollbackKeepsVersion() {
+        long before = dataVersion.current();
+
+        tx.executeWithoutResult(status -> {
+            dataVersion.changed();
+            status.setRollbackOnly();
+        });
+
+        assertThat(dataVersion.current()).isEqualTo(before);
+    }
+
+    @Test
+    public void versionChangesAfterCommit() {
+        long before = dataVersion.current();
+
+        tx.executeWithoutResult(status -> {
+            dataVersion.changed();
+            assertThat(dataVersion.current()).isEqualTo(before);
+        });
+
+        assertThat(dataVersion.current()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void otherNodeChangeIsVisibleAfterPoll() {
+        DataVersion otherNode = new DataVersion(jdbcTemplate, 0);
+        otherNode.afterSingletonsInstantiated();
+        dataVersion.poll();
+        long before = dataVersion.current();
+
+        otherNode.changed();
+        otherNode.poll();
+        assertThat(dataVersion.current()).isEqualTo(before);
+
+        dataVersion.poll();
+        assertThat(dataVersion.current()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void ownChangeIsNotCountedTwice() {
+        dataVersion.poll();
+        dataVersion.changed();
+        long changed = dataVersion.current();
+
+        dataVersion.poll();
+
+        assertThat(dataVersion.current()).isEqualTo(changed);
+    }
+}
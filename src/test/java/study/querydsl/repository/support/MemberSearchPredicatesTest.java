@@ -0,0 +1,96 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class MemberSearchPredicatesTest {
+
+    @Test
+    public void contradiction() {
+        assertThat(MemberSearchPredicates.of(condition(40, 35)).isUnsatisfiable()).isTrue();
+        assertThat(MemberSearchPredicates.of(condition(null, -1)).isUnsatisfiable()).isTrue();
+        assertThat(MemberSearchPredicates.of(condition(-5, 0)).isUnsatisfiable()).isFalse();
+
+        MemberSearchPredicates predicates = MemberSearchPredicates.of(condition(40, 35));
+        assertThat(predicates.matches(new MemberTeamDto(1L, "member1", 38, null, null))).isFalse();
+        assertThatThrownBy(predicates::jpa).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void mergeRange() {
+        assertThat(MemberSearchPredicates.of(condition(35, 40)).jpa())
+                .containsExactly(null, null, null, null, member.age.between(35, 40));
+        assertThat(MemberSearchPredicates.of(condition(35, 35)).jpa())
+                .containsExactly(null, null, null, null, member.age.eq(35));
+        //나이는 0 이상이므로 하한 0 이하는 조건이 아니다
+        assertThat(MemberSearchPredicates.of(condition(0, null)).jpa())
+                .containsExactly(null, null, null, null, null);
+    }
+
+    @Test
+    public void usernameAndTeamName() {
+        MemberSearchCondition condition = condition(null, 40);
+        condition.setUsername("member1");
+        condition.setTeamName("");
+
+        assertThat(MemberSearchPredicates.of(condition).jpa())
+                .containsExactly(member.username.eq("member1"), null, null, null, member.age.loe(40));
+        assertThat(MemberSearchPredicates.of(condition).matches(new MemberTeamDto(1L, "member1", 10, 1L, "teamA")))
+                .isTrue();
+
+        condition.setTeamName("teamB");
+        assertThat(MemberSearchPredicates.of(condition).jpa()[2]).isEqualTo(team.name.eq("teamB"));
+    }
+
+    @Test
+    public void multiValue() {
+        MemberSearchCondition condition = condition(null, null);
+        condition.setUsernames(Arrays.asList("member2", "member1", "member2"));
+        condition.setTeamIds(new ArrayList<>());
+
+        MemberSearchPredicates predicates = MemberSearchPredicates.of(condition);
+        assertThat(predicates.getUsernames()).containsExactly("member1", "member2");
+        assertThat(predicates.getTeamIds()).isNull();
+        assertThat(predicates.jpa()[1]).isEqualTo(member.username.in("member1", "member2"));
+        assertThat(predicates.matches(new MemberTeamDto(1L, "member1", 10, 1L, "teamA"))).isTrue();
+        assertThat(predicates.matches(new MemberTeamDto(3L, "member3", 10, 1L, "teamA"))).isFalse();
+
+        //username 이 목록에 없으면 맞는 회원이 없다
+        condition.setUsername("member3");
+        assertThat(MemberSearchPredicates.of(condition).isUnsatisfiable()).isTrue();
+        condition.setUsername("member1");
+        assertThat(MemberSearchPredicates.of(condition).jpa())
+                .containsExactly(member.username.eq("member1"), null, null, null, null);
+    }
+
+    @Test
+    public void chunkLongList() {
+        List<Long> teamIds = new ArrayList<>();
+        for (long i = 0; i < MemberSearchPredicates.IN_LIST_MAX + 1; i++) {
+            teamIds.add(i);
+        }
+        MemberSearchCondition condition = condition(null, null);
+        condition.setTeamIds(teamIds);
+
+        assertThat(MemberSearchPredicates.of(condition).jpa()[3]).isEqualTo(
+                team.id.in(teamIds.subList(0, MemberSearchPredicates.IN_LIST_MAX))
+                        .or(team.id.in(teamIds.subList(MemberSearchPredicates.IN_LIST_MAX, teamIds.size()))));
+    }
+
+    private MemberSearchCondition condition(Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
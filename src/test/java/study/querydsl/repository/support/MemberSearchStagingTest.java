@@ -0,0 +1,178 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.SearchEngine;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * staging 은 자체 트랜잭션으로 커밋하므로 테스트 트랜잭션(@Transactional) 없이 데이터를 커밋하고 직접 지운다.
+ */
+@SpringBootTest
+class MemberSearchStagingTest {
+
+    private static final String PREFIX = "staging-test-";
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    @Autowired
+    MemberSearchStaging staging;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberSearchCoalescer searchCoalescer;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member(PREFIX + i, i));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Member m where m.username like :prefix")
+                .setParameter("prefix", PREFIX + "%")
+                .executeUpdate());
+        staging.removeExpired(System.currentTimeMillis() + 2 * TTL_MILLIS + 1);
+    }
+
+    @Test
+    public void stagesLongListOnceWithOrdinals() {
+        MemberSearchCondition condition = condition(1500);
+        int before = staging.getStagedCount();
+
+        List<MemberTeamDto> first = memberRepository.search(condition, SearchEngine.SQL);
+        List<MemberTeamDto> second = memberRepository.search(condition, SearchEngine.JPA);
+
+        assertThat(first).extracting(MemberTeamDto::getUsername)
+                .containsExactlyInAnyOrder(usernames(10).toArray(new String[0]));
+        assertThat(second).hasSize(10);
+        //같은 목록은 한 번만 넣는다. 순번은 0 부터 차례로
+        assertThat(staging.getStagedCount()).isEqualTo(before + 1);
+        assertThat(jdbcTemplate.queryForList(
+                "select ordinal from search_filter_value where string_value = ?", Integer.class, PREFIX + 0))
+                .hasSize(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from search_filter_value where string_value like ?", Integer.class,
+                PREFIX + "%")).isEqualTo(1500);
+    }
+
+    @Test
+    public void insideTransactionFallsBackToInList() {
+        MemberSearchCondition condition = condition(2000);
+        int before = staging.getStagedCount();
+
+        List<MemberTeamDto> result = tx.execute(status -> memberRepository.search(condition));
+
+        //호출한 쪽 트랜잭션 안에서는 커넥션을 더 잡지 않으므로 넣지 않는다
+        assertThat(result).hasSize(10);
+        assertThat(staging.getStagedCount()).isEqualTo(before);
+
+        //밖에서 넣어 둔 목록은 트랜잭션 안에서도 쓴다
+        staging.predicates(condition);
+        assertThat(staging.getStagedCount()).isEqualTo(before + 1);
+        assertThat(tx.execute(status -> memberRepository.search(condition))).hasSize(10);
+        assertThat(staging.getStagedCount()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void pagingSearchesStageBeforeTheirTransaction() throws Exception {
+        MemberSearchCondition condition = condition(1300);
+        int before = staging.getStagedCount();
+        QueryDeadline deadline = QueryDeadline.after(Duration.ofSeconds(10));
+
+        Page<MemberTeamDto> simple = searchCoalescer.searchPageSimple(condition, PageRequest.of(0, 20), deadline)
+                .get(10, TimeUnit.SECONDS);
+        Page<MemberTeamDto> complex = searchCoalescer.searchPageComplex(condition, PageRequest.of(0, 20), deadline)
+                .get(10, TimeUnit.SECONDS);
+
+        //읽기 전용 트랜잭션을 열기 전에 넣으므로 /v2, /v3 도 staging 을 쓴다
+        assertThat(simple.getTotalElements()).isEqualTo(10);
+        assertThat(complex.getContent()).hasSize(10);
+        assertThat(staging.getStagedCount()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void builderSearchUsesStaging() {
+        MemberSearchCondition condition = condition(1400);
+        int before = staging.getStagedCount();
+
+        assertThat(memberJpaRepository.searchByBuilder(condition)).hasSize(10);
+        assertThat(staging.getStagedCount()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void expiredListIsRestagedAndOldRowsRemoved() {
+        MemberSearchCondition condition = condition(1200);
+        staging.predicates(condition);
+        //재시작 전(또는 다른 노드)이 남긴 행
+        jdbcTemplate.update("insert into search_filter_value (filter_id, ordinal, string_value, long_value, created_at) "
+                + "values (?, ?, ?, ?, ?)", -1L, 0, PREFIX + "old", null, 0L);
+        long now = System.currentTimeMillis();
+
+        //내줄 기한만 지났으면 새 검색에는 내주지 않지만 행은 남긴다 (이미 받은 검색이 쓰는 중일 수 있다)
+        assertThat(staging.removeExpired(now + TTL_MILLIS)).isEqualTo(1);
+        assertThat(staging.getStagedCount()).isZero();
+        assertThat(countRows()).isEqualTo(1200);
+
+        assertThat(memberRepository.search(condition, SearchEngine.SQL)).hasSize(10);
+        assertThat(staging.getStagedCount()).isEqualTo(1);
+        assertThat(countRows()).isEqualTo(2400);
+
+        assertThat(staging.removeExpired(now + 3 * TTL_MILLIS)).isGreaterThanOrEqualTo(2400);
+        assertThat(countRows()).isZero();
+    }
+
+    private int countRows() {
+        return jdbcTemplate.queryForObject("select count(*) from search_filter_value where string_value like ?",
+                Integer.class, PREFIX + "%");
+    }
+
+    //앞의 10개는 있는 회원, 나머지는 없는 회원
+    private MemberSearchCondition condition(int size) {
+        List<String> usernames = usernames(10);
+        for (int i = 10; i < size; i++) {
+            usernames.add(PREFIX + "missing-" + i);
+        }
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernames(usernames);
+        return condition;
+    }
+
+    private List<String> usernames(int count) {
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            usernames.add(PREFIX + i);
+        }
+        return usernames;
+    }
+}
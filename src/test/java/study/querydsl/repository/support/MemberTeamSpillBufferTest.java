@@ -0,0 +1,66 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberTeamSpillBufferTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void spillAndReadBack() throws Exception {
+        MemberTeamSpillBuffers buffers = new MemberTeamSpillBuffers(1, dir.toString());
+        MemberTeamSpillBuffer buffer = buffers.create();
+        for (long id = 1; id <= 1000; id++) {
+            buffer.accept(new MemberTeamDto(id, "member" + id, (int) id, id % 2 == 0 ? 1L : null,
+                    id % 2 == 0 ? "teamA" : null));
+        }
+        buffer.finish();
+        assertThat(buffer.isSpilled()).isTrue();
+        Path file = buffer.getFile();
+        assertThat(Files.exists(file)).isTrue();
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        for (MemberTeamDto dto : buffer) {
+            result.add(dto);
+        }
+        assertThat(result).hasSize(1000);
+        assertThat(result.get(1)).isEqualTo(new MemberTeamDto(2L, "member2", 2, 1L, "teamA"));
+        assertThat(result.get(2).getTeamId()).isNull();
+
+        buffer.close();
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(buffers.openCount()).isZero();
+    }
+
+    @Test
+    public void closeWhileReading() throws Exception {
+        MemberTeamSpillBuffers buffers = new MemberTeamSpillBuffers(1, dir.toString());
+        MemberTeamSpillBuffer buffer = buffers.create();
+        for (long id = 1; id <= 1000; id++) {
+            buffer.accept(new MemberTeamDto(id, "member" + id, (int) id, null, null));
+        }
+        buffer.finish();
+
+        //응답 도중 연결이 끊겨서 다 읽지 않은 채로 닫는 경우
+        Iterator<MemberTeamDto> reading = buffer.iterator();
+        assertThat(reading.next().getMemberId()).isEqualTo(1L);
+        buffer.close();
+
+        assertThat(reading.hasNext()).isFalse();
+        assertThat(Files.exists(buffer.getFile())).isFalse();
+        assertThat(buffers.openCount()).isZero();
+        assertThatThrownBy(buffer::iterator).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.repository.support.PartitionedScan.IdRange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionedScanTest {
+
+    @Test
+    public void boundariesFromSamples() {
+        //표본이 앞쪽에 몰려 있으면 범위도 앞쪽을 잘게 나눈다
+        List<Long> samples = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 1000L);
+        List<IdRange> ranges = PartitionedScan.boundaries(1, 1000, samples, 4);
+
+        assertThat(ranges).containsExactly(
+                new IdRange(1, 3), new IdRange(3, 5), new IdRange(5, 7), new IdRange(7, 1001));
+    }
+
+    @Test
+    public void boundariesWithoutSamples() {
+        assertThat(PartitionedScan.boundaries(0, 99, Collections.emptyList(), 4)).containsExactly(
+                new IdRange(0, 24), new IdRange(24, 48), new IdRange(48, 72), new IdRange(72, 100));
+        //범위보다 나눌 개수가 많으면 하나
+        assertThat(PartitionedScan.boundaries(5, 6, Collections.emptyList(), 4))
+                .containsExactly(new IdRange(5, 7));
+    }
+
+    @Test
+    public void mergeSortedWithLimit() {
+        List<Integer> merged = PartitionedScan.mergeSorted(
+                Arrays.asList(1, 4, 9), Arrays.asList(2, 3, 10), Comparator.naturalOrder(), 4);
+
+        assertThat(merged).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    public void mergeGroupsLikeGroupBy() {
+        //팀별 (나이 합, 회원 수) -> 마지막에 평균
+        Map<String, long[]> left = new HashMap<>();
+        left.put("teamA", new long[]{30, 2});
+        Map<String, long[]> right = new HashMap<>();
+        right.put("teamA", new long[]{0, 0});
+        right.put("teamB", new long[]{70, 2});
+
+        Map<String, long[]> merged = PartitionedScan.mergeGroups(left, right,
+                (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]});
+
+        assertThat(merged.get("teamA")[0] / merged.get("teamA")[1]).isEqualTo(15);
+        assertThat(merged.get("teamB")[0] / merged.get("teamB")[1]).isEqualTo(35);
+        assertThat(new ArrayList<>(merged.keySet())).containsExactlyInAnyOrder("teamA", "teamB");
+    }
+}
@@ -0,0 +1,102 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    @Test
+    public void thunderingHerd() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            results.add(singleFlight.execute("member1", () -> {
+                queries.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 10;
+            }, executor));
+        }
+        release.countDown();
+
+        for (CompletableFuture<Integer> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(10);
+        }
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(singleFlight.getExecutions()).isEqualTo(1);
+        assertThat(singleFlight.getCoalesced()).isEqualTo(499);
+        executor.shutdown();
+    }
+
+    @Test
+    public void notCachedAfterCompletion() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger queries = new AtomicInteger();
+
+        singleFlight.execute("member1", queries::incrementAndGet, Runnable::run).get();
+        singleFlight.execute("member1", queries::incrementAndGet, Runnable::run).get();
+
+        assertThat(queries.get()).isEqualTo(2);
+        assertThat(singleFlight.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void failureIsShared() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+        CompletableFuture<Integer> result = singleFlight.execute("member1", () -> {
+            throw new IllegalStateException("db down");
+        }, Runnable::run);
+
+        assertThat(result).isCompletedExceptionally();
+        assertThat(singleFlight.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void cancelSharedOnlyWhenAllWaitersLeave() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        List<Runnable> tasks = new ArrayList<>();
+        List<CompletableFuture<Integer>> shared = new ArrayList<>();
+
+        CompletableFuture<Integer> first = singleFlight.execute("member1", flight -> {
+            shared.add(flight);
+            return 10;
+        }, tasks::add);
+        CompletableFuture<Integer> second = singleFlight.execute("member1", () -> 20, tasks::add);
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+
+        CompletableFuture<Integer> third = singleFlight.execute("member2", flight -> {
+            shared.add(flight);
+            return 30;
+        }, tasks::add);
+        CompletableFuture<Integer> fourth = singleFlight.execute("member2", () -> 40, tasks::add);
+        third.cancel(false);
+        assertThat(fourth).isNotDone();
+        fourth.cancel(false);
+        tasks.forEach(Runnable::run);
+
+        assertThat(first).isCompletedWithValue(10);
+        assertThat(second).isCompletedWithValue(10);
+        //모든 요청이 빠진 실행은 loader 를 호출하지 않는다
+        assertThat(shared).hasSize(1);
+        assertThat(singleFlight.getInFlight()).isEqualTo(0);
+    }
+}